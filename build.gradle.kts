@@ -18,6 +18,7 @@
  */
 plugins {
     java
+    id("me.champeau.jmh") version "0.6.6" apply false
 }
 allprojects {
     apply(plugin = "java")
@@ -44,14 +45,15 @@ allprojects {
     }
 }
 
-mapOf(
+val spigotVersions = mapOf(
     "spigot_v1_13_R2_2" to "1.13.2",
     "spigot_v1_14_R4" to "1.14.4",
     "spigot_v1_15_R2" to "1.15.2",
     "spigot_v1_16_R3" to "1.16.5",
     "spigot_v1_17_R1" to "1.17",
     "spigot_v1_17_R1_2" to "1.17.1",
-).forEach { (projectName, ver) ->
+)
+spigotVersions.forEach { (projectName, ver) ->
     project(":$projectName") {
         dependencies.implementation("org.spigotmc", "spigot", "${ver}-R0.1-SNAPSHOT")
     }
@@ -64,8 +66,29 @@ project(":paperweight_1_17") {
     dependencies.implementation("io.papermc.paper", "paper", "1.17.1-R0.1-SNAPSHOT", classifier = "mojang-mapped" )
 }
 
+// Benchmarks run against one Spigot adapter at a time, using a bootstrapped registry instead of a server.
+// Pick it with -PjmhAdapter=<project>, the latest by default, and compare the result files across versions.
+project(":jmh") {
+    apply(plugin = "me.champeau.jmh")
+    val adapter = findProperty("jmhAdapter")?.toString() ?: "spigot_v1_17_R1_2"
+    val serverVersion = spigotVersions[adapter]
+        ?: throw GradleException("No benchmarks for $adapter, expected one of ${spigotVersions.keys}")
+    the<SourceSetContainer>()["jmh"].java.srcDir("src/$adapter/java")
+    dependencies {
+        "jmh"(project(":$adapter"))
+        "jmh"("org.spigotmc", "spigot", "${serverVersion}-R0.1-SNAPSHOT")
+    }
+    configure<me.champeau.jmh.JmhParameters> {
+        warmupIterations.set(3)
+        iterations.set(5)
+        fork.set(1)
+        findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+        resultsFile.set(layout.buildDirectory.file("results/jmh/$adapter.txt"))
+    }
+}
+
 tasks.jar {
-    from(subprojects.map {
+    from(subprojects.filter { it.name != "jmh" }.map {
         it.sourceSets["main"].output
     })
 }
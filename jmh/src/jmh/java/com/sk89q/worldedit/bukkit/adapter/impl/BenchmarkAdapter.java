@@ -0,0 +1,47 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
+import com.sk89q.worldedit.util.nbt.BinaryTag;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.block.BlockState;
+
+/**
+ * The adapter being benchmarked, with its native types hidden so the same benchmarks
+ * run against every version. Each version implements this as {@code AdapterUnderTest}
+ * in its own source directory, {@code src/<adapter project>/java}.
+ */
+abstract class BenchmarkAdapter {
+
+    abstract BukkitImplAdapter getAdapter();
+
+    abstract int getDataVersion();
+
+    abstract Object toNativeBlockState(BlockState state);
+
+    abstract BinaryTag toNative(Object foreign);
+
+    abstract Object fromNative(CompoundBinaryTag foreign);
+
+    abstract CompoundBinaryTag toNativeBinary(Object foreign);
+
+    abstract Object fromNativeBinary(CompoundBinaryTag foreign);
+}
@@ -0,0 +1,160 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
+import com.sk89q.worldedit.event.platform.PlatformReadyEvent;
+import com.sk89q.worldedit.extension.platform.AbstractPlatform;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.util.SideEffect;
+import com.sk89q.worldedit.world.DataFixer;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+import com.sk89q.worldedit.world.registry.Registries;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * A WorldEdit platform backed by a bootstrapped vanilla registry, so the adapter
+ * can be benchmarked without starting a server.
+ */
+final class BenchmarkPlatform extends AbstractPlatform {
+
+    private static BenchmarkAdapter adapter;
+
+    /**
+     * Bootstrap the registries and register the platform, once per JVM.
+     *
+     * @return the adapter under test
+     */
+    static synchronized BenchmarkAdapter bootstrap() throws Exception {
+        if (adapter == null) {
+            adapter = new AdapterUnderTest();
+
+            BenchmarkPlatform platform = new BenchmarkPlatform(adapter);
+            WorldEdit.getInstance().getPlatformManager().register(platform);
+            WorldEdit.getInstance().getEventBus().post(new PlatformReadyEvent(platform));
+        }
+        return adapter;
+    }
+
+    private final BenchmarkAdapter platformAdapter;
+    private final Registries registries;
+    private final LocalConfiguration configuration = new LocalConfiguration() {
+        @Override
+        public void load() {
+        }
+    };
+
+    private BenchmarkPlatform(BenchmarkAdapter platformAdapter) {
+        this.platformAdapter = platformAdapter;
+        this.registries = new AdapterRegistries(platformAdapter.getAdapter());
+    }
+
+    @Override
+    public Registries getRegistries() {
+        return registries;
+    }
+
+    @Override
+    public int getDataVersion() {
+        return platformAdapter.getDataVersion();
+    }
+
+    @Override
+    public DataFixer getDataFixer() {
+        return platformAdapter.getAdapter().getDataFixer();
+    }
+
+    @Override
+    public boolean isValidMobType(String type) {
+        return false;
+    }
+
+    @Override
+    public void reload() {
+    }
+
+    @Override
+    public LocalConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public String getVersion() {
+        return "benchmark";
+    }
+
+    @Override
+    public String getPlatformName() {
+        return "Benchmark";
+    }
+
+    @Override
+    public String getPlatformVersion() {
+        return getVersion();
+    }
+
+    @Override
+    public Map<Capability, Preference> getCapabilities() {
+        Map<Capability, Preference> capabilities = new EnumMap<>(Capability.class);
+        capabilities.put(Capability.GAME_HOOKS, Preference.PREFERRED);
+        capabilities.put(Capability.WORLD_EDITING, Preference.PREFERRED);
+        return capabilities;
+    }
+
+    @Override
+    public Set<SideEffect> getSupportedSideEffects() {
+        return platformAdapter.getAdapter().getSupportedSideEffects();
+    }
+
+    private static final class AdapterRegistries extends BundledRegistries {
+        private final BlockRegistry blockRegistry;
+
+        AdapterRegistries(BukkitImplAdapter adapter) {
+            this.blockRegistry = new BundledBlockRegistry() {
+                @Override
+                public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                    return adapter.getProperties(blockType);
+                }
+
+                @Override
+                public OptionalInt getInternalBlockStateId(BlockState state) {
+                    return adapter.getInternalBlockStateId(state);
+                }
+            };
+        }
+
+        @Override
+        public BlockRegistry getBlockRegistry() {
+            return blockRegistry;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block state lookups on the set path. The chunk write itself needs a loaded world, so
+ * this covers the translation that each version's WorldNativeAccess performs for every
+ * block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlockStateBenchmark {
+
+    private static final String[] TYPES = {
+        "minecraft:stone", "minecraft:oak_stairs", "minecraft:redstone_wire",
+        "minecraft:chest", "minecraft:oak_leaves", "minecraft:note_block"
+    };
+
+    private BenchmarkAdapter adapter;
+    private BlockType[] types;
+    private BlockState[] states;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        adapter = BenchmarkPlatform.bootstrap();
+        types = new BlockType[TYPES.length];
+        List<BlockState> allStates = new ArrayList<>();
+        for (int i = 0; i < TYPES.length; i++) {
+            types[i] = BlockTypes.get(TYPES[i]);
+            allStates.addAll(types[i].getAllStates());
+        }
+        states = allStates.toArray(new BlockState[0]);
+    }
+
+    private int nextIndex(int length) {
+        int index = next++;
+        if (next >= length) {
+            next = 0;
+        }
+        return index;
+    }
+
+    @Benchmark
+    public OptionalInt getInternalBlockStateId() {
+        return adapter.getAdapter().getInternalBlockStateId(states[nextIndex(states.length)]);
+    }
+
+    @Benchmark
+    public Map<String, ? extends Property<?>> getProperties() {
+        return adapter.getAdapter().getProperties(types[nextIndex(types.length)]);
+    }
+
+    @Benchmark
+    public Object toNativeBlockState() {
+        return adapter.toNativeBlockState(states[nextIndex(states.length)]);
+    }
+}
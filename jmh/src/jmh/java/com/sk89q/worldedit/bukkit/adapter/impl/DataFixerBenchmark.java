@@ -0,0 +1,133 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.DataFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upgrading 1.12.2 data through the adapter's DataConverters, one benchmark per fix type.
+ *
+ * <p>Block state, item and biome fixes are cached, so their benchmarks cycle through a
+ * handful of names like a real palette does. The uncached variants fork with both fix
+ * caches sized to zero, which measures the fixer itself on every call.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataFixerBenchmark {
+
+    private static final String[] BLOCK_STATES = {
+        "minecraft:furnace[facing=north,lit=true]", "minecraft:oak_stairs[facing=east,half=bottom,shape=straight]",
+        "minecraft:redstone_wire[east=side,north=none,power=7,south=side,west=none]", "minecraft:grass[snowy=false]",
+        "minecraft:chest[facing=south]", "minecraft:leaves[check_decay=false,decayable=true,variant=birch]",
+        "minecraft:stone[variant=granite]", "minecraft:noteblock"
+    };
+    private static final String[] ITEM_TYPES = {
+        "minecraft:wool", "minecraft:stained_hardened_clay", "minecraft:log", "minecraft:red_flower",
+        "minecraft:skull", "minecraft:planks", "minecraft:diamond_sword", "minecraft:stone"
+    };
+    private static final String[] BIOMES = {
+        "minecraft:mutated_ice_flats", "minecraft:extreme_hills", "minecraft:roofed_forest", "minecraft:mesa_clear_rock",
+        "minecraft:hell", "minecraft:sky", "minecraft:plains", "minecraft:mutated_forest"
+    };
+    private static final String NO_BLOCK_STATE_FIX_CACHE = "-Dworldedit.adapter.blockStateFixCacheSize=0";
+    private static final String NO_NAME_FIX_CACHE = "-Dworldedit.adapter.nameFixCacheSize=0";
+
+    private DataFixer fixer;
+    private CompoundBinaryTag chunk;
+    private CompoundBinaryTag blockEntity;
+    private CompoundBinaryTag entity;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        fixer = BenchmarkPlatform.bootstrap().getAdapter().getDataFixer();
+        chunk = NbtFixtures.legacyChunk();
+        blockEntity = NbtFixtures.legacyChest();
+        entity = NbtFixtures.zombie();
+    }
+
+    private String nextValue(String[] values) {
+        int index = next++;
+        if (next >= values.length) {
+            next = 0;
+        }
+        return values[index];
+    }
+
+    @Benchmark
+    public CompoundBinaryTag fixChunk() {
+        return fixer.fixUp(DataFixer.FixTypes.CHUNK, chunk, NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    public CompoundBinaryTag fixBlockEntity() {
+        return fixer.fixUp(DataFixer.FixTypes.BLOCK_ENTITY, blockEntity, NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    public CompoundBinaryTag fixEntity() {
+        return fixer.fixUp(DataFixer.FixTypes.ENTITY, entity, NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    public String fixBlockState() {
+        return fixer.fixUp(DataFixer.FixTypes.BLOCK_STATE, nextValue(BLOCK_STATES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = { NO_BLOCK_STATE_FIX_CACHE, NO_NAME_FIX_CACHE })
+    public String fixBlockStateUncached() {
+        return fixer.fixUp(DataFixer.FixTypes.BLOCK_STATE, nextValue(BLOCK_STATES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    public String fixItemType() {
+        return fixer.fixUp(DataFixer.FixTypes.ITEM_TYPE, nextValue(ITEM_TYPES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = { NO_BLOCK_STATE_FIX_CACHE, NO_NAME_FIX_CACHE })
+    public String fixItemTypeUncached() {
+        return fixer.fixUp(DataFixer.FixTypes.ITEM_TYPE, nextValue(ITEM_TYPES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    public String fixBiome() {
+        return fixer.fixUp(DataFixer.FixTypes.BIOME, nextValue(BIOMES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = { NO_BLOCK_STATE_FIX_CACHE, NO_NAME_FIX_CACHE })
+    public String fixBiomeUncached() {
+        return fixer.fixUp(DataFixer.FixTypes.BIOME, nextValue(BIOMES), NbtFixtures.LEGACY_DATA_VERSION);
+    }
+}
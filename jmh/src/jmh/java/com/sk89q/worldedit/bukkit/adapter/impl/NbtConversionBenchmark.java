@@ -0,0 +1,88 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.util.nbt.BinaryTag;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion between WorldEdit and native NBT, by tree walk and through the binary bridge.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NbtConversionBenchmark {
+
+    @Param({ "chest", "zombie", "chunk" })
+    public String fixture;
+
+    private BenchmarkAdapter adapter;
+    private CompoundBinaryTag worldEditTag;
+    private Object nativeTag;
+
+    @Setup
+    public void setup() throws Exception {
+        adapter = BenchmarkPlatform.bootstrap();
+        switch (fixture) {
+            case "chest":
+                worldEditTag = NbtFixtures.chest();
+                break;
+            case "zombie":
+                worldEditTag = NbtFixtures.zombie();
+                break;
+            case "chunk":
+                worldEditTag = NbtFixtures.legacyChunk();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+        nativeTag = adapter.fromNative(worldEditTag);
+    }
+
+    @Benchmark
+    public BinaryTag toNative() {
+        return adapter.toNative(nativeTag);
+    }
+
+    @Benchmark
+    public Object fromNative() {
+        return adapter.fromNative(worldEditTag);
+    }
+
+    @Benchmark
+    public CompoundBinaryTag toNativeBinary() {
+        return adapter.toNativeBinary(nativeTag);
+    }
+
+    @Benchmark
+    public Object fromNativeBinary() {
+        return adapter.fromNativeBinary(worldEditTag);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.util.nbt.BinaryTagTypes;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.util.nbt.DoubleBinaryTag;
+import com.sk89q.worldedit.util.nbt.ListBinaryTag;
+import com.sk89q.worldedit.util.nbt.StringBinaryTag;
+
+import java.util.Random;
+
+/**
+ * NBT shaped like what a clipboard actually holds: filled containers, equipped
+ * mobs and whole pre-flattening chunks.
+ */
+final class NbtFixtures {
+
+    /**
+     * The data version of 1.12.2, the oldest data the fixer is routinely fed.
+     */
+    static final int LEGACY_DATA_VERSION = 1343;
+
+    private NbtFixtures() {
+    }
+
+    static CompoundBinaryTag chest() {
+        ListBinaryTag.Builder<CompoundBinaryTag> items = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        for (int slot = 0; slot < 27; slot++) {
+            items.add(item(slot, "minecraft:diamond_sword"));
+        }
+        return CompoundBinaryTag.builder()
+            .putString("id", "minecraft:chest")
+            .putInt("x", 0)
+            .putInt("y", 64)
+            .putInt("z", 0)
+            .putString("CustomName", "{\"text\":\"Loot\"}")
+            .put("Items", items.build())
+            .build();
+    }
+
+    static CompoundBinaryTag legacyChest() {
+        ListBinaryTag.Builder<CompoundBinaryTag> items = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        for (int slot = 0; slot < 27; slot++) {
+            items.add(CompoundBinaryTag.builder()
+                .putByte("Slot", (byte) slot)
+                .putString("id", "minecraft:wool")
+                .putShort("Damage", (short) (slot % 16))
+                .putByte("Count", (byte) 64)
+                .build());
+        }
+        return CompoundBinaryTag.builder()
+            .putString("id", "minecraft:chest")
+            .putInt("x", 0)
+            .putInt("y", 64)
+            .putInt("z", 0)
+            .put("Items", items.build())
+            .build();
+    }
+
+    static CompoundBinaryTag zombie() {
+        ListBinaryTag.Builder<CompoundBinaryTag> armor = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        armor.add(item(0, "minecraft:iron_boots"));
+        armor.add(item(1, "minecraft:iron_leggings"));
+        armor.add(item(2, "minecraft:iron_chestplate"));
+        armor.add(item(3, "minecraft:iron_helmet"));
+        ListBinaryTag.Builder<CompoundBinaryTag> attributes = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        attributes.add(CompoundBinaryTag.builder().putString("Name", "generic.maxHealth").putDouble("Base", 20).build());
+        attributes.add(CompoundBinaryTag.builder().putString("Name", "generic.followRange").putDouble("Base", 35).build());
+        return CompoundBinaryTag.builder()
+            .putString("id", "minecraft:zombie")
+            .put("Pos", ListBinaryTag.builder(BinaryTagTypes.DOUBLE)
+                .add(DoubleBinaryTag.of(0.5))
+                .add(DoubleBinaryTag.of(64))
+                .add(DoubleBinaryTag.of(0.5))
+                .build())
+            .putFloat("Health", 20)
+            .putShort("Fire", (short) -1)
+            .putByte("OnGround", (byte) 1)
+            .put("ArmorItems", armor.build())
+            .put("Attributes", attributes.build())
+            .build();
+    }
+
+    static CompoundBinaryTag legacyChunk() {
+        Random random = new Random(0);
+        ListBinaryTag.Builder<CompoundBinaryTag> sections = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        for (int y = 0; y < 4; y++) {
+            byte[] blocks = new byte[4096];
+            byte[] data = new byte[2048];
+            for (int i = 0; i < blocks.length; i++) {
+                // Stone, dirt, planks and wool, so the flattening has real work to do
+                blocks[i] = (byte) new int[] { 1, 3, 5, 35 }[random.nextInt(4)];
+            }
+            random.nextBytes(data);
+            sections.add(CompoundBinaryTag.builder()
+                .putByte("Y", (byte) y)
+                .putByteArray("Blocks", blocks)
+                .putByteArray("Data", data)
+                .putByteArray("BlockLight", new byte[2048])
+                .putByteArray("SkyLight", new byte[2048])
+                .build());
+        }
+        ListBinaryTag.Builder<CompoundBinaryTag> tileEntities = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        tileEntities.add(legacyChest());
+        ListBinaryTag.Builder<CompoundBinaryTag> entities = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        entities.add(zombie());
+        CompoundBinaryTag level = CompoundBinaryTag.builder()
+            .putInt("xPos", 0)
+            .putInt("zPos", 0)
+            .putLong("LastUpdate", 0)
+            .putByte("TerrainPopulated", (byte) 1)
+            .putByteArray("Biomes", new byte[256])
+            .putIntArray("HeightMap", new int[256])
+            .put("Sections", sections.build())
+            .put("TileEntities", tileEntities.build())
+            .put("Entities", entities.build())
+            .build();
+        return CompoundBinaryTag.builder()
+            .putInt("DataVersion", LEGACY_DATA_VERSION)
+            .put("Level", level)
+            .build();
+    }
+
+    private static CompoundBinaryTag item(int slot, String id) {
+        ListBinaryTag.Builder<CompoundBinaryTag> enchantments = ListBinaryTag.builder(BinaryTagTypes.COMPOUND);
+        enchantments.add(CompoundBinaryTag.builder().putString("id", "minecraft:sharpness").putShort("lvl", (short) 5).build());
+        enchantments.add(CompoundBinaryTag.builder().putString("id", "minecraft:unbreaking").putShort("lvl", (short) 3).build());
+        ListBinaryTag.Builder<StringBinaryTag> lore = ListBinaryTag.builder(BinaryTagTypes.STRING);
+        lore.add(StringBinaryTag.of("{\"text\":\"Found in a dungeon\"}"));
+        CompoundBinaryTag tag = CompoundBinaryTag.builder()
+            .putInt("Damage", 12)
+            .put("Enchantments", enchantments.build())
+            .put("display", CompoundBinaryTag.builder()
+                .putString("Name", "{\"text\":\"Blade #" + slot + "\"}")
+                .put("Lore", lore.build())
+                .build())
+            .build();
+        return CompoundBinaryTag.builder()
+            .putByte("Slot", (byte) slot)
+            .putString("id", id)
+            .putByte("Count", (byte) 1)
+            .put("tag", tag)
+            .build();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
+import com.sk89q.worldedit.util.nbt.BinaryTag;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.block.BlockState;
+import net.minecraft.server.v1_15_R1.DispenserRegistry;
+import net.minecraft.server.v1_15_R1.IBlockData;
+import net.minecraft.server.v1_15_R1.NBTBase;
+import net.minecraft.server.v1_15_R1.NBTTagCompound;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.craftbukkit.v1_15_R1.util.CraftMagicNumbers;
+import org.spigotmc.SpigotConfig;
+
+/**
+ * The Spigot_v1_15_R2 adapter, on registries bootstrapped without a server.
+ */
+final class AdapterUnderTest extends BenchmarkAdapter {
+
+    private final Spigot_v1_15_R2 adapter;
+
+    AdapterUnderTest() throws Exception {
+        DispenserRegistry.init();
+        // The adapter writes to the Spigot config, which only a running server would load
+        SpigotConfig.config = new YamlConfiguration();
+        adapter = new Spigot_v1_15_R2();
+    }
+
+    @Override
+    BukkitImplAdapter getAdapter() {
+        return adapter;
+    }
+
+    @Override
+    int getDataVersion() {
+        return CraftMagicNumbers.INSTANCE.getDataVersion();
+    }
+
+    @Override
+    IBlockData toNativeBlockState(BlockState state) {
+        return adapter.toNativeBlockState(state);
+    }
+
+    @Override
+    BinaryTag toNative(Object foreign) {
+        return adapter.toNative((NBTBase) foreign);
+    }
+
+    @Override
+    NBTBase fromNative(CompoundBinaryTag foreign) {
+        return adapter.fromNative(foreign);
+    }
+
+    @Override
+    CompoundBinaryTag toNativeBinary(Object foreign) {
+        return adapter.toNativeBinary((NBTTagCompound) foreign);
+    }
+
+    @Override
+    NBTTagCompound fromNativeBinary(CompoundBinaryTag foreign) {
+        return adapter.fromNativeBinary(foreign);
+    }
+}
@@ -1,16 +1,30 @@
 package com.sk89q.worldedit.bukkit.adapter.impl;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.world.storage.ChunkStore;
+import org.bukkit.Bukkit;
 import org.bukkit.craftbukkit.v1_17_R1.CraftWorld;
 import org.bukkit.craftbukkit.v1_17_R1.block.data.CraftBlockData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.wna.WorldNativeAccess;
 import com.sk89q.worldedit.util.SideEffect;
@@ -21,24 +35,66 @@
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.level.ChunkHolder;
+import net.minecraft.server.level.ChunkMap;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.ai.navigation.PathNavigation;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.EntityBlock;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class WorldNativeAccess_Paperweight_1_17 implements
     WorldNativeAccess<LevelChunk, BlockState, BlockPos> {
 
   private static final int UPDATE = 1, NOTIFY = 2;
+  private static final int CHUNK_CACHE_SIZE = 4;
+  private static final int RESEND_THRESHOLD = Integer.getInteger("worldedit.adapter.resendThreshold", 64);
+  private static final boolean DEFER_LIGHTING = Boolean.getBoolean("worldedit.adapter.deferLighting");
+  private static final int MAX_LIGHT_UPDATES_PER_TICK = Integer.getInteger("worldedit.adapter.maxLightUpdatesPerTick", 16 * 16 * 16 * 2);
+  private static final int SECTION_AREA = 16 * 16;
+  private static final int SECTION_VOLUME = SECTION_AREA * 16;
+  // The world's navigating mobs, which still hear about every block once a section is resent whole
+  private static final Field NAVIGATING_MOBS_FIELD = findSetField(ServerLevel.class, Mob.class);
 
   private final Spigot_Paperweight_1_17 adapter;
   private final WeakReference<Level> world;
   private SideEffectSet sideEffectSet;
+  private boolean reusePositions;
+  private final BlockPos.MutableBlockPos mutablePosition = new BlockPos.MutableBlockPos();
+
+  // A handful of recently used chunks, so that contiguous edits skip the chunk provider lookup
+  private final long[] cachedChunkKeys = new long[CHUNK_CACHE_SIZE];
+  @SuppressWarnings("unchecked")
+  private final WeakReference<LevelChunk>[] cachedChunks = new WeakReference[CHUNK_CACHE_SIZE];
+  private int nextCachedChunk;
+  private int cachedChunkUnloads;
+  // Chunk unloads on the whole server, so that cached chunks are dropped once any of them may be detached
+  private static int chunkUnloads;
+  private static boolean chunkUnloadListenerRegistered;
+
+  // Work that is deferred until the edit is flushed
+  private boolean deferLighting = DEFER_LIGHTING;
+  private final ChunkSectionBits_Paperweight_1_17 pendingLighting = new ChunkSectionBits_Paperweight_1_17();
+  private final ChunkSectionBits_Paperweight_1_17 pendingResend = new ChunkSectionBits_Paperweight_1_17();
+  private final ChunkSectionBits_Paperweight_1_17 pendingDirty = new ChunkSectionBits_Paperweight_1_17();
+  private boolean flushScheduled;
 
   public WorldNativeAccess_Paperweight_1_17(Spigot_Paperweight_1_17 adapter, WeakReference<Level> world) {
     this.adapter = adapter;
     this.world = world;
+    registerChunkUnloadListener();
   }
 
   private Level getWorld() {
@@ -47,20 +103,76 @@ private Level getWorld() {
 
   @Override
   public void setCurrentSideEffectSet(SideEffectSet sideEffectSet) {
-    this.sideEffectSet = sideEffectSet;
+    if (this.sideEffectSet != sideEffectSet) {
+      this.sideEffectSet = sideEffectSet;
+      this.reusePositions = canReusePositions(sideEffectSet);
+    }
+  }
+
+  /**
+   * Without these side effects a position is only handed to code that reads it
+   * or copies it, so a single mutable position can be reused for every block.
+   */
+  private static boolean canReusePositions(SideEffectSet sideEffectSet) {
+    return !sideEffectSet.shouldApply(SideEffect.NEIGHBORS)
+      && !sideEffectSet.shouldApply(SideEffect.VALIDATION)
+      && !sideEffectSet.shouldApply(SideEffect.ENTITY_AI)
+      && !sideEffectSet.shouldApply(SideEffect.EVENTS)
+      && !sideEffectSet.shouldApply(SideEffect.UPDATE);
   }
 
   @Override
   public LevelChunk getChunk(int x, int z) {
-    return getWorld().getChunk(x, z);
+    // Any unload may have detached a cached chunk, including one a plugin asked for mid-tick
+    if (cachedChunkUnloads != chunkUnloads) {
+      Arrays.fill(cachedChunks, null);
+      cachedChunkUnloads = chunkUnloads;
+    }
+    long key = ChunkPos.asLong(x, z);
+    for (int i = 0; i < CHUNK_CACHE_SIZE; i++) {
+      if (cachedChunkKeys[i] == key && cachedChunks[i] != null) {
+        LevelChunk chunk = cachedChunks[i].get();
+        if (chunk != null) {
+          return chunk;
+        }
+      }
+    }
+    LevelChunk chunk = getWorld().getChunk(x, z);
+    cachedChunkKeys[nextCachedChunk] = key;
+    cachedChunks[nextCachedChunk] = new WeakReference<>(chunk);
+    nextCachedChunk = (nextCachedChunk + 1) % CHUNK_CACHE_SIZE;
+    return chunk;
+  }
+
+  private static void registerChunkUnloadListener() {
+    if (!chunkUnloadListenerRegistered) {
+      chunkUnloadListenerRegistered = true;
+      Bukkit.getPluginManager().registerEvents(new ChunkUnloadListener(), WorldEditPlugin.getInstance());
+    }
+  }
+
+  /**
+   * Counts chunk unloads, which invalidates the chunks cached by every access.
+   */
+  private static final class ChunkUnloadListener implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+      chunkUnloads++;
+    }
+
+    @EventHandler
+    public void onPluginDisable(PluginDisableEvent event) {
+      if (event.getPlugin() == WorldEditPlugin.getInstance()) {
+        // The listener is unregistered along with the plugin, so the next access registers it again
+        chunkUnloadListenerRegistered = false;
+        chunkUnloads++;
+      }
+    }
   }
 
   @Override
   public BlockState toNative(com.sk89q.worldedit.world.block.BlockState state) {
-    int stateId = BlockStateIdAccess.getBlockStateId(state);
-    return BlockStateIdAccess.isValidInternalId(stateId)
-        ? Block.stateById(stateId)
-        : ((CraftBlockData) BukkitAdapter.adapt(state)).getState();
+    return adapter.toNativeBlockState(state);
   }
 
   @Override
@@ -71,7 +183,111 @@ public BlockState getBlockState(LevelChunk chunk, BlockPos position) {
   @Nullable
   @Override
   public BlockState setBlockState(LevelChunk chunk, BlockPos position, BlockState state) {
-    return chunk.setBlockState(position, state, false);
+    return chunk.setBlockState(retainablePosition(position, state), state, false);
+  }
+
+  /**
+   * Writes a whole 16x16x16 section of blocks straight into the chunk section,
+   * instead of going through {@link #setBlockState} for every block.
+   *
+   * <p>{@code combinedIds} holds one combined state id per block, indexed as
+   * {@code y << 8 | z << 4 | x}. Entries that are not a valid internal id leave
+   * the block untouched. The heightmaps of every column that changed are brought
+   * up to date once the section is written, and the changed blocks are marked for
+   * sending. No other side effects are applied.</p>
+   *
+   * <p>This is not part of {@link WorldNativeAccess}, so it is only reachable by
+   * code that holds this access directly.</p>
+   *
+   * @param chunkX the chunk X coordinate
+   * @param sectionY the section Y coordinate
+   * @param chunkZ the chunk Z coordinate
+   * @param combinedIds the combined state ids
+   * @return the number of blocks that were changed
+   */
+  public int setBlocks(int chunkX, int sectionY, int chunkZ, int[] combinedIds) {
+    checkArgument(combinedIds.length == SECTION_VOLUME, "Expected %s combined ids, got %s", SECTION_VOLUME, combinedIds.length);
+    LevelChunk chunk = getChunk(chunkX, chunkZ);
+    LevelChunkSection[] sections = chunk.getSections();
+    int sectionIndex = getWorld().getSectionIndexFromSectionY(sectionY);
+    checkArgument(sectionIndex >= 0 && sectionIndex < sections.length, "Section %s is outside of the world", sectionY);
+
+    int changed = 0;
+    boolean sectionWritten = false;
+    // One bit per column of the section, set when any block in it changed
+    long[] changedColumns = new long[SECTION_AREA / Long.SIZE];
+    for (int i = 0; i < SECTION_VOLUME; i++) {
+      int combinedId = combinedIds[i];
+      if (!BlockStateIdAccess.isValidInternalId(combinedId)) {
+        continue;
+      }
+      BlockState state = Block.stateById(combinedId);
+      int x = i & 15;
+      int y = i >> 8;
+      int z = (i >> 4) & 15;
+      LevelChunkSection section = sections[sectionIndex];
+      if (section == null) {
+        // Let the chunk create the section, then write the rest of it directly
+        if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+          continue;
+        }
+      } else {
+        BlockState old = section.getBlockState(x, y, z);
+        if (old == state) {
+          continue;
+        }
+        if (old.getBlock() instanceof EntityBlock || state.getBlock() instanceof EntityBlock) {
+          // Tile entities are created and removed by the chunk
+          if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+            continue;
+          }
+        } else {
+          section.setBlockState(x, y, z, state, false);
+          markBlockChanged(chunk, mutablePosition.set((chunkX << 4) + x, (sectionY << 4) + y, (chunkZ << 4) + z));
+          sectionWritten = true;
+        }
+      }
+      int column = i & (SECTION_AREA - 1);
+      changedColumns[column >> 6] |= 1L << column;
+      changed++;
+    }
+    if (sectionWritten) {
+      chunk.markUnsaved();
+    }
+    if (changed > 0) {
+      updateHeightMaps(chunk, sections[sectionIndex], sectionY << 4, changedColumns);
+    }
+    return changed;
+  }
+
+  /**
+   * Brings the heightmaps of the given columns up to date with the blocks that were
+   * written straight into the section. Blocks below the top of a column cannot move
+   * it, so every column is only walked down from the top of the section to its top.
+   */
+  private static void updateHeightMaps(LevelChunk chunk, LevelChunkSection section, int baseY, long[] columns) {
+    for (int column = 0; column < SECTION_AREA; column++) {
+      if ((columns[column >> 6] & 1L << column) == 0) {
+        continue;
+      }
+      int x = column & 15;
+      int z = column >> 4;
+      for (Map.Entry<Heightmap.Types, Heightmap> entry : chunk.getHeightmaps()) {
+        Heightmap heightmap = entry.getValue();
+        for (int y = 15; y >= 0 && baseY + y >= heightmap.getFirstAvailable(x, z) - 1; y--) {
+          heightmap.update(x, baseY + y, z, section.getBlockState(x, y, z));
+        }
+      }
+    }
+  }
+
+  private boolean setBlockInChunk(LevelChunk chunk, int chunkX, int sectionY, int chunkZ, int index, BlockState state) {
+    BlockPos position = mutablePosition.set((chunkX << 4) + (index & 15), (sectionY << 4) + (index >> 8), (chunkZ << 4) + ((index >> 4) & 15));
+    if (chunk.setBlockState(retainablePosition(position, state), state, false) == null) {
+      return false;
+    }
+    markBlockChanged(chunk, position);
+    return true;
   }
 
   @Override
@@ -81,14 +297,120 @@ public BlockState getValidBlockForPosition(BlockState block, BlockPos position)
 
   @Override
   public BlockPos getPosition(int x, int y, int z) {
+    if (reusePositions) {
+      return mutablePosition.set(x, y, z);
+    }
     return new BlockPos(x, y, z);
   }
 
+  /**
+   * Tile entities keep the position they are created at, so the reused mutable
+   * position must not be handed to the chunk when it creates one.
+   */
+  private BlockPos retainablePosition(BlockPos position, BlockState state) {
+    if (position == mutablePosition && state.getBlock() instanceof EntityBlock) {
+      return new BlockPos(position.getX(), position.getY(), position.getZ());
+    }
+    return position;
+  }
+
   @Override
   public void updateLightingForBlock(BlockPos position) {
+    if (deferLighting) {
+      if (pendingLighting.add(position.getX(), position.getY(), position.getZ())) {
+        scheduleFlush();
+      }
+      return;
+    }
     getWorld().getLightEngine().checkBlock(position);
   }
 
+  /**
+   * Sets whether lighting updates are collected during an edit instead of being
+   * queued as every block is set. Once this access is {@link #flush() flushed}, they
+   * are still handed to the light engine one block at a time, but only up to a
+   * number of blocks per tick, whole chunk sections at a time.
+   *
+   * @param deferLighting true to defer lighting updates
+   */
+  public void setDeferLighting(boolean deferLighting) {
+    if (!deferLighting) {
+      flush();
+    }
+    this.deferLighting = deferLighting;
+  }
+
+  /**
+   * Applies the work that was deferred during the current edit. This happens on
+   * the next server tick on its own, but may be called as soon as an edit is done.
+   * Deferred lighting is spread over as many further ticks as it needs.
+   */
+  public void flush() {
+    flushScheduled = false;
+    Level world = this.world.get();
+    if (world == null) {
+      pendingLighting.clear();
+      pendingResend.clear();
+      pendingDirty.clear();
+      return;
+    }
+    if (!pendingLighting.isEmpty()) {
+      flushLightUpdates(world);
+    }
+    if (!pendingDirty.isEmpty()) {
+      flushDirty(world);
+    }
+    if (!pendingResend.isEmpty()) {
+      flushResend(world);
+    }
+  }
+
+  private void flushLightUpdates(Level world) {
+    LevelLightEngine lightEngine = world.getLightEngine();
+    // The light engine only takes single positions, copying each one as it's queued, and
+    // queueing a whole edit at once overflows its queue. This only rate-limits the per-block
+    // updates: whole sections are handed over up to a budget per tick and the rest waits
+    // for the next flush
+    BlockPos.MutableBlockPos position = new BlockPos.MutableBlockPos();
+    pendingLighting.drainSections(MAX_LIGHT_UPDATES_PER_TICK, (x, y, z) -> lightEngine.checkBlock(position.set(x, y, z)));
+    if (!pendingLighting.isEmpty()) {
+      scheduleFlush();
+    }
+  }
+
+  private void flushDirty(Level world) {
+    ChunkMap chunkMap = ((ServerChunkCache) world.getChunkSource()).chunkMap;
+    BlockPos.MutableBlockPos position = new BlockPos.MutableBlockPos();
+    // Look each chunk holder up once, it only keeps the section-relative positions
+    for (ChunkSectionBits_Paperweight_1_17.ChunkBits chunk : pendingDirty.getChunks()) {
+      ChunkHolder holder = chunkMap.getVisibleChunkIfPresent(ChunkPos.asLong(chunk.getX(), chunk.getZ()));
+      if (holder != null) {
+        chunk.forEach((x, y, z) -> holder.blockChanged(position.set(x, y, z)));
+      }
+    }
+    pendingDirty.clear();
+  }
+
+  private void flushResend(Level world) {
+    // Chunks with a section that went past the threshold skipped per-block notification
+    for (ChunkSectionBits_Paperweight_1_17.ChunkBits chunk : pendingResend.getChunks()) {
+      for (int sectionY : chunk.getSectionYs()) {
+        if (chunk.sectionSize(sectionY) > RESEND_THRESHOLD) {
+          world.getWorld().refreshChunk(chunk.getX(), chunk.getZ());
+          break;
+        }
+      }
+    }
+    pendingResend.clear();
+  }
+
+  private void scheduleFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      Bukkit.getScheduler().runTask(WorldEditPlugin.getInstance(), this::flush);
+    }
+  }
+
   @Override
   public boolean updateTileEntity(BlockPos position, CompoundBinaryTag tag) {
     // We will assume that the tile entity was created for us,
@@ -105,10 +427,65 @@ public boolean updateTileEntity(BlockPos position, CompoundBinaryTag tag) {
     @Override
     public void notifyBlockUpdate(LevelChunk chunk, BlockPos position, BlockState oldState, BlockState newState) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            getWorld().sendBlockUpdated(position, oldState, newState, UPDATE | NOTIFY);
+            if (pendingResend.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
+            // Past the threshold the whole chunk is resent on flush instead of each block,
+            // but paths that cross the block still have to be recomputed
+            if (pendingResend.sectionSize(position.getX(), position.getY(), position.getZ()) <= RESEND_THRESHOLD) {
+                getWorld().sendBlockUpdated(position, oldState, newState, UPDATE | NOTIFY);
+            } else {
+                updateNavigation(position, oldState, newState);
+            }
         }
     }
 
+  /**
+   * Recomputes the paths that cross a changed block, like notifying the world of the
+   * change does, without sending the block to players.
+   */
+  private void updateNavigation(BlockPos position, BlockState oldState, BlockState newState) {
+    Level world = getWorld();
+    if (!Shapes.joinIsNotEmpty(oldState.getCollisionShape(world, position), newState.getCollisionShape(world, position), BooleanOp.NOT_SAME)) {
+      return;
+    }
+    // Recomputing a path may add or remove navigating mobs, so the set is walked first
+    List<PathNavigation> navigations = new ArrayList<>();
+    for (Mob mob : getNavigatingMobs(world)) {
+      PathNavigation navigation = mob.getNavigation();
+      if (navigation.shouldRecomputePath(position)) {
+        navigations.add(navigation);
+      }
+    }
+    for (PathNavigation navigation : navigations) {
+      navigation.recomputePath();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Set<Mob> getNavigatingMobs(Level world) {
+    try {
+      return (Set<Mob>) NAVIGATING_MOBS_FIELD.get(world);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Couldn't read the world's navigating mobs", e);
+    }
+  }
+
+  /**
+   * Finds a private set by its element type, since its name differs between mappings.
+   */
+  private static Field findSetField(Class<?> owner, Class<?> elementType) {
+    for (Field field : owner.getDeclaredFields()) {
+      Type type = field.getGenericType();
+      if (Set.class.isAssignableFrom(field.getType()) && type instanceof ParameterizedType
+        && ((ParameterizedType) type).getActualTypeArguments()[0] == elementType) {
+        field.setAccessible(true);
+        return field;
+      }
+    }
+    throw new ExceptionInInitializerError("No set of " + elementType.getName() + " in " + owner.getName());
+  }
+
   @Override
   public boolean isChunkTicking(LevelChunk chunk) {
     return chunk.getFullStatus().isOrAfter(ChunkHolder.FullChunkStatus.TICKING);
@@ -117,8 +494,9 @@ public boolean isChunkTicking(LevelChunk chunk) {
     @Override
     public void markBlockChanged(LevelChunk chunk, BlockPos position) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            ((net.minecraft.server.level.ServerChunkCache) getWorld().getChunkSource())
-                    .blockChanged(position);
+            if (pendingDirty.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
         }
     }
 
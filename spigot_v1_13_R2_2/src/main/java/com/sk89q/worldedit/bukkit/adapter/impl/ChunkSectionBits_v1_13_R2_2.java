@@ -0,0 +1,223 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter.impl;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of block positions stored as one bit per block, grouped by chunk and
+ * chunk section, so that per-block work can be batched per section.
+ */
+final class ChunkSectionBits_v1_13_R2_2 {
+
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private final Map<Long, ChunkBits> chunks = new LinkedHashMap<>();
+    // Contiguous edits mostly hit the chunk of the previous block
+    private ChunkBits lastChunk;
+
+    /**
+     * Add a block position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position was not in the set yet
+     */
+    boolean add(int x, int y, int z) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        ChunkBits chunk = lastChunk;
+        if (chunk == null || chunk.x != chunkX || chunk.z != chunkZ) {
+            chunk = chunks.computeIfAbsent(chunkKey(chunkX, chunkZ), k -> new ChunkBits(chunkX, chunkZ));
+            lastChunk = chunk;
+        }
+        return chunk.add(x & 15, y, z & 15);
+    }
+
+    /**
+     * Get the number of positions in the section containing the given block.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the number of positions in the section
+     */
+    int sectionSize(int x, int y, int z) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        ChunkBits chunk = lastChunk;
+        if (chunk == null || chunk.x != chunkX || chunk.z != chunkZ) {
+            chunk = chunks.get(chunkKey(chunkX, chunkZ));
+        }
+        return chunk == null ? 0 : chunk.sectionSize(y >> 4);
+    }
+
+    /**
+     * Visit and remove whole sections of positions, in the order their chunks were
+     * first added, until at least {@code limit} positions were visited.
+     *
+     * @param limit the number of visited positions after which no further section is started
+     * @param consumer the consumer
+     */
+    void drainSections(int limit, BlockConsumer consumer) {
+        int visited = 0;
+        Iterator<ChunkBits> iterator = chunks.values().iterator();
+        while (visited < limit && iterator.hasNext()) {
+            ChunkBits chunk = iterator.next();
+            visited += chunk.drainSections(limit - visited, consumer);
+            if (chunk.sections.isEmpty()) {
+                iterator.remove();
+                if (chunk == lastChunk) {
+                    lastChunk = null;
+                }
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    Collection<ChunkBits> getChunks() {
+        return chunks.values();
+    }
+
+    void clear() {
+        chunks.clear();
+        lastChunk = null;
+    }
+
+    private static long chunkKey(int x, int z) {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
+
+    @FunctionalInterface
+    interface BlockConsumer {
+        void accept(int x, int y, int z);
+    }
+
+    static final class ChunkBits {
+        private final int x;
+        private final int z;
+        // Ordered by section Y, so blocks are visited bottom to top
+        private final Map<Integer, SectionBits> sections = new TreeMap<>();
+        // Contiguous edits mostly hit the section of the previous block
+        private SectionBits lastSection;
+        private int lastSectionY;
+
+        private ChunkBits(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getZ() {
+            return z;
+        }
+
+        private boolean add(int localX, int y, int localZ) {
+            int sectionY = y >> 4;
+            SectionBits section = lastSection;
+            if (section == null || lastSectionY != sectionY) {
+                section = sections.computeIfAbsent(sectionY, k -> new SectionBits());
+                lastSection = section;
+                lastSectionY = sectionY;
+            }
+            return section.add((y & 15) << 8 | localZ << 4 | localX);
+        }
+
+        int sectionSize(int sectionY) {
+            SectionBits section = lastSection != null && lastSectionY == sectionY ? lastSection : sections.get(sectionY);
+            return section == null ? 0 : section.size;
+        }
+
+        /**
+         * Get the Y coordinates of the sections that have any positions.
+         *
+         * @return the section Y coordinates, in ascending order
+         */
+        Collection<Integer> getSectionYs() {
+            return sections.keySet();
+        }
+
+        /**
+         * Visit every position in this chunk, in world coordinates.
+         *
+         * @param consumer the consumer
+         */
+        void forEach(BlockConsumer consumer) {
+            for (Map.Entry<Integer, SectionBits> entry : sections.entrySet()) {
+                forEach(entry.getKey(), entry.getValue(), consumer);
+            }
+        }
+
+        private int drainSections(int limit, BlockConsumer consumer) {
+            int visited = 0;
+            Iterator<Map.Entry<Integer, SectionBits>> iterator = sections.entrySet().iterator();
+            while (visited < limit && iterator.hasNext()) {
+                Map.Entry<Integer, SectionBits> entry = iterator.next();
+                forEach(entry.getKey(), entry.getValue(), consumer);
+                visited += entry.getValue().size;
+                iterator.remove();
+            }
+            lastSection = null;
+            return visited;
+        }
+
+        private void forEach(int sectionY, SectionBits section, BlockConsumer consumer) {
+            int baseX = x << 4;
+            int baseY = sectionY << 4;
+            int baseZ = z << 4;
+            long[] words = section.words;
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                while (bits != 0) {
+                    int index = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    consumer.accept(baseX + (index & 15), baseY + (index >> 8), baseZ + ((index >> 4) & 15));
+                }
+            }
+        }
+    }
+
+    private static final class SectionBits {
+        private final long[] words = new long[SECTION_VOLUME / Long.SIZE];
+        private int size;
+
+        private boolean add(int index) {
+            long mask = 1L << index;
+            long word = words[index >>> 6];
+            if ((word & mask) != 0) {
+                return false;
+            }
+            words[index >>> 6] = word | mask;
+            size++;
+            return true;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.sk89q.worldedit.bukkit.adapter.impl;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -103,6 +106,10 @@ private CompoundBinaryTag fixEntity(CompoundBinaryTag origEnt, int srcVer) {
     }
 
     private String fixBlockState(String blockState, int srcVer) {
+        return fixedBlockStates.getUnchecked(new FixKey(DataConverterTypes.l, blockState, srcVer));
+    }
+
+    private String computeFixedBlockState(String blockState, int srcVer) {
         NBTTagCompound stateNBT = stateToNBT(blockState);
         Dynamic<NBTBase> dynamic = new Dynamic<>(OPS_NBT, stateNBT);
         NBTTagCompound fixed = (NBTTagCompound) INSTANCE.fixer.update(DataConverterTypes.l, dynamic, srcVer, DATA_VERSION).getValue();
@@ -149,6 +156,10 @@ private String fixItemType(String key, int srcVer) {
     }
 
     private static String fixName(String key, int srcVer, TypeReference type) {
+        return INSTANCE.fixedNames.getUnchecked(new FixKey(type, key, srcVer));
+    }
+
+    private static String computeFixedName(String key, int srcVer, TypeReference type) {
         return INSTANCE.fixer.update(type, new Dynamic<>(OPS_NBT, new NBTTagString(key)), srcVer, DATA_VERSION)
                 .getStringValue().orElse(key);
     }
@@ -160,13 +171,57 @@ private static String fixName(String key, int srcVer, TypeReference type) {
     private static int DATA_VERSION;
     static DataConverters_1_13_R2_2 INSTANCE;
 
+    // Legacy palettes repeat the same few hundred states, so each only needs one pass through the fixer
+    private static final int MAX_CACHED_BLOCK_STATES = Integer.getInteger("worldedit.adapter.blockStateFixCacheSize", 4096);
+    private final LoadingCache<FixKey, String> fixedBlockStates = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_BLOCK_STATES)
+            .build(CacheLoader.from(key -> computeFixedBlockState(key.value, key.srcVer)));
+
+    // Item and biome names from old saves are just as repetitive, and share one bound across fix types
+    private static final int MAX_CACHED_NAMES = Integer.getInteger("worldedit.adapter.nameFixCacheSize", 8192);
+    private final LoadingCache<FixKey, String> fixedNames = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_NAMES)
+            .build(CacheLoader.from(key -> computeFixedName(key.value, key.srcVer, key.type)));
+
     private final Map<LegacyType, List<DataConverter>> converters = new EnumMap<>(LegacyType.class);
     private final Map<LegacyType, List<DataInspector>> inspectors = new EnumMap<>(LegacyType.class);
+    private final Map<LegacyType, ConverterChain> converterChains = new EnumMap<>(LegacyType.class);
+    private final Map<LegacyType, InspectorChain> inspectorChains = new EnumMap<>(LegacyType.class);
 
     // Set on build
     private DataFixer fixer;
     private static final Map<String, LegacyType> DFU_TO_LEGACY = new HashMap<>();
 
+    private static final class FixKey {
+        private final TypeReference type;
+        private final String value;
+        private final int srcVer;
+
+        FixKey(TypeReference type, String value, int srcVer) {
+            this.type = type;
+            this.value = value;
+            this.srcVer = srcVer;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FixKey)) {
+                return false;
+            }
+            FixKey other = (FixKey) o;
+            return srcVer == other.srcVer && value.equals(other.value)
+                && type.typeName().equals(other.type.typeName());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type.typeName().hashCode() + value.hashCode()) + srcVer;
+        }
+    }
+
     public enum LegacyType {
         LEVEL(DataFixTypes.LEVEL),
         PLAYER(DataFixTypes.PLAYER),
@@ -202,7 +257,24 @@ public TypeReference getDFUType() {
     // Called after fixers are built and ready for FIXING
     @Override
     public DataFixer build(final Executor executor) {
-        return this.fixer = new WrappedDataFixer(DataConverterRegistry.a());
+        // Nothing registers after this point, so each type's chains are compiled once and only read from then on
+        converters.forEach((type, list) -> converterChains.put(type, new ConverterChain(list)));
+        inspectors.forEach((type, list) -> inspectorChains.put(type, new InspectorChain(list)));
+        this.fixer = new WrappedDataFixer(DataConverterRegistry.a());
+        executor.execute(this::precomputeItemNames);
+        return this.fixer;
+    }
+
+    /**
+     * Fix every pre-flattening item id ahead of time, as 1.12.2 data is what
+     * the name fixes are mostly fed.
+     */
+    private void precomputeItemNames() {
+        for (String material : DataConverterMaterialId.materials) {
+            if (material != null) {
+                fixName(material, LEGACY_VERSION, DataConverterTypes.q);
+            }
+        }
     }
 
     private class WrappedDataFixer implements DataFixer {
@@ -227,21 +299,14 @@ public <T> Dynamic<T> update(TypeReference type, Dynamic<T> dynamic, int sourceV
         }
 
         private NBTTagCompound convert(LegacyType type, NBTTagCompound cmp, int sourceVer, int desiredVersion) {
-            List<DataConverter> converters = DataConverters_1_13_R2_2.this.converters.get(type);
-            if (converters != null && !converters.isEmpty()) {
-                for (DataConverter converter : converters) {
-                    int dataVersion = converter.getDataVersion();
-                    if (dataVersion > sourceVer && dataVersion <= desiredVersion) {
-                        cmp = converter.convert(cmp);
-                    }
-                }
+            ConverterChain converters = converterChains.get(type);
+            if (converters != null) {
+                cmp = converters.apply(cmp, sourceVer, desiredVersion);
             }
 
-            List<DataInspector> inspectors = DataConverters_1_13_R2_2.this.inspectors.get(type);
-            if (inspectors != null && !inspectors.isEmpty()) {
-                for (DataInspector inspector : inspectors) {
-                    cmp = inspector.inspect(cmp, sourceVer, desiredVersion);
-                }
+            InspectorChain inspectors = inspectorChains.get(type);
+            if (inspectors != null) {
+                cmp = inspectors.apply(cmp, sourceVer, desiredVersion);
             }
 
             return cmp;
@@ -294,6 +359,80 @@ public interface DataConverter {
     }
 
 
+    /**
+     * The converters of one legacy type. They are kept sorted by data version, so
+     * a call only walks the run between its source and target versions.
+     */
+    private static final class ConverterChain {
+        private final int[] versions;
+        private final DataConverter[] steps;
+
+        ConverterChain(List<DataConverter> converters) {
+            this.steps = converters.toArray(new DataConverter[0]);
+            this.versions = new int[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                versions[i] = steps[i].getDataVersion();
+            }
+        }
+
+        NBTTagCompound apply(NBTTagCompound cmp, int sourceVer, int desiredVersion) {
+            for (int i = firstAfter(sourceVer); i < steps.length && versions[i] <= desiredVersion; i++) {
+                cmp = steps[i].convert(cmp);
+            }
+            return cmp;
+        }
+
+        private int firstAfter(int version) {
+            int low = 0;
+            int high = versions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (versions[mid] <= version) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The inspectors of one legacy type. Leading inspectors that only apply to a
+     * single id are looked up by that id instead of each checking it in turn.
+     */
+    private static final class InspectorChain {
+        private final Map<MinecraftKey, DataInspectorTagged[]> tagged = new HashMap<>();
+        private final DataInspector[] rest;
+
+        InspectorChain(List<DataInspector> inspectors) {
+            Map<MinecraftKey, List<DataInspectorTagged>> byKey = new HashMap<>();
+            int i = 0;
+            // Stop at the first untagged inspector, which may change the id for those after it
+            for (; i < inspectors.size() && inspectors.get(i) instanceof DataInspectorTagged; i++) {
+                DataInspectorTagged inspector = (DataInspectorTagged) inspectors.get(i);
+                byKey.computeIfAbsent(inspector.key, k -> new ArrayList<>()).add(inspector);
+            }
+            byKey.forEach((key, list) -> tagged.put(key, list.toArray(new DataInspectorTagged[0])));
+            this.rest = inspectors.subList(i, inspectors.size()).toArray(new DataInspector[0]);
+        }
+
+        NBTTagCompound apply(NBTTagCompound cmp, int sourceVer, int targetVer) {
+            if (!tagged.isEmpty()) {
+                DataInspectorTagged[] matching = tagged.get(new MinecraftKey(cmp.getString("id")));
+                if (matching != null) {
+                    for (DataInspectorTagged inspector : matching) {
+                        cmp = inspector.inspectChecked(cmp, sourceVer, targetVer);
+                    }
+                }
+            }
+            for (DataInspector inspector : rest) {
+                cmp = inspector.inspect(cmp, sourceVer, targetVer);
+            }
+            return cmp;
+        }
+    }
+
     private void registerInspector(LegacyType type, DataInspector inspector) {
         this.inspectors.computeIfAbsent(type, k -> new ArrayList<>()).add(inspector);
     }
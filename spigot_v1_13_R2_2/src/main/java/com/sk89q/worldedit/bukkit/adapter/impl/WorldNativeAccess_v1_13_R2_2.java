@@ -1,6 +1,6 @@
 package com.sk89q.worldedit.bukkit.adapter.impl;
 
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.wna.WorldNativeAccess;
 import com.sk89q.worldedit.util.SideEffect;
@@ -10,31 +10,76 @@
 import net.minecraft.server.v1_13_R2.Block;
 import net.minecraft.server.v1_13_R2.BlockPosition;
 import net.minecraft.server.v1_13_R2.Chunk;
+import net.minecraft.server.v1_13_R2.ChunkCoordIntPair;
+import net.minecraft.server.v1_13_R2.ChunkSection;
 import net.minecraft.server.v1_13_R2.EnumDirection;
+import net.minecraft.server.v1_13_R2.HeightMap;
 import net.minecraft.server.v1_13_R2.IBlockData;
+import net.minecraft.server.v1_13_R2.ITileEntity;
 import net.minecraft.server.v1_13_R2.NBTBase;
 import net.minecraft.server.v1_13_R2.NBTTagCompound;
+import net.minecraft.server.v1_13_R2.NavigationListener;
+import net.minecraft.server.v1_13_R2.PlayerChunk;
+import net.minecraft.server.v1_13_R2.PlayerChunkMap;
 import net.minecraft.server.v1_13_R2.TileEntity;
 import net.minecraft.server.v1_13_R2.World;
 import net.minecraft.server.v1_13_R2.WorldServer;
+import org.bukkit.Bukkit;
 import org.bukkit.craftbukkit.v1_13_R2.CraftWorld;
 import org.bukkit.craftbukkit.v1_13_R2.block.data.CraftBlockData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Objects;
 import javax.annotation.Nullable;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class WorldNativeAccess_v1_13_R2_2 implements WorldNativeAccess<Chunk, IBlockData, BlockPosition> {
     private static final int UPDATE = 1, NOTIFY = 2;
+    private static final int CHUNK_CACHE_SIZE = 4;
+    private static final int RESEND_THRESHOLD = Integer.getInteger("worldedit.adapter.resendThreshold", 64);
+    private static final boolean DEFER_LIGHTING = Boolean.getBoolean("worldedit.adapter.deferLighting");
+    private static final int MAX_LIGHT_UPDATES_PER_TICK = Integer.getInteger("worldedit.adapter.maxLightUpdatesPerTick", 16 * 16 * 16 * 2);
+    private static final int SECTION_AREA = 16 * 16;
+    private static final int SECTION_VOLUME = SECTION_AREA * 16;
+    // The listener that keeps paths up to date, which still hears about every block once a section is resent whole
+    private static final Field NAVIGATION_LISTENER_FIELD = findField(World.class, NavigationListener.class);
 
     private final Spigot_v1_13_R2_2 adapter;
     private final WeakReference<World> world;
     private SideEffectSet sideEffectSet;
+    private boolean reusePositions;
+    private final BlockPosition.MutableBlockPosition mutablePosition = new BlockPosition.MutableBlockPosition();
+
+    // A handful of recently used chunks, so that contiguous edits skip the chunk provider lookup
+    private final long[] cachedChunkKeys = new long[CHUNK_CACHE_SIZE];
+    @SuppressWarnings("unchecked")
+    private final WeakReference<Chunk>[] cachedChunks = new WeakReference[CHUNK_CACHE_SIZE];
+    private int nextCachedChunk;
+    private int cachedChunkUnloads;
+    // Chunk unloads on the whole server, so that cached chunks are dropped once any of them may be detached
+    private static int chunkUnloads;
+    private static boolean chunkUnloadListenerRegistered;
+
+    // Work that is deferred until the edit is flushed
+    private boolean deferLighting = DEFER_LIGHTING;
+    private final ChunkSectionBits_v1_13_R2_2 pendingLighting = new ChunkSectionBits_v1_13_R2_2();
+    private final ChunkSectionBits_v1_13_R2_2 pendingResend = new ChunkSectionBits_v1_13_R2_2();
+    private final ChunkSectionBits_v1_13_R2_2 pendingDirty = new ChunkSectionBits_v1_13_R2_2();
+    private boolean flushScheduled;
 
     public WorldNativeAccess_v1_13_R2_2(Spigot_v1_13_R2_2 adapter, WeakReference<World> world) {
         this.adapter = adapter;
         this.world = world;
+        registerChunkUnloadListener();
     }
 
     private World getWorld() {
@@ -43,20 +88,76 @@ private World getWorld() {
 
     @Override
     public void setCurrentSideEffectSet(SideEffectSet sideEffectSet) {
-        this.sideEffectSet = sideEffectSet;
+        if (this.sideEffectSet != sideEffectSet) {
+            this.sideEffectSet = sideEffectSet;
+            this.reusePositions = canReusePositions(sideEffectSet);
+        }
+    }
+
+    /**
+     * Without these side effects a position is only handed to code that reads it
+     * or copies it, so a single mutable position can be reused for every block.
+     */
+    private static boolean canReusePositions(SideEffectSet sideEffectSet) {
+        return !sideEffectSet.shouldApply(SideEffect.NEIGHBORS)
+            && !sideEffectSet.shouldApply(SideEffect.VALIDATION)
+            && !sideEffectSet.shouldApply(SideEffect.ENTITY_AI)
+            && !sideEffectSet.shouldApply(SideEffect.EVENTS)
+            && !sideEffectSet.shouldApply(SideEffect.UPDATE);
     }
 
     @Override
     public Chunk getChunk(int x, int z) {
-        return getWorld().getChunkAt(x, z);
+        // Any unload may have detached a cached chunk, including one a plugin asked for mid-tick
+        if (cachedChunkUnloads != chunkUnloads) {
+            Arrays.fill(cachedChunks, null);
+            cachedChunkUnloads = chunkUnloads;
+        }
+        long key = ChunkCoordIntPair.a(x, z);
+        for (int i = 0; i < CHUNK_CACHE_SIZE; i++) {
+            if (cachedChunkKeys[i] == key && cachedChunks[i] != null) {
+                Chunk chunk = cachedChunks[i].get();
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+        }
+        Chunk chunk = getWorld().getChunkAt(x, z);
+        cachedChunkKeys[nextCachedChunk] = key;
+        cachedChunks[nextCachedChunk] = new WeakReference<>(chunk);
+        nextCachedChunk = (nextCachedChunk + 1) % CHUNK_CACHE_SIZE;
+        return chunk;
+    }
+
+    private static void registerChunkUnloadListener() {
+        if (!chunkUnloadListenerRegistered) {
+            chunkUnloadListenerRegistered = true;
+            Bukkit.getPluginManager().registerEvents(new ChunkUnloadListener(), WorldEditPlugin.getInstance());
+        }
+    }
+
+    /**
+     * Counts chunk unloads, which invalidates the chunks cached by every access.
+     */
+    private static final class ChunkUnloadListener implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChunkUnload(ChunkUnloadEvent event) {
+            chunkUnloads++;
+        }
+
+        @EventHandler
+        public void onPluginDisable(PluginDisableEvent event) {
+            if (event.getPlugin() == WorldEditPlugin.getInstance()) {
+                // The listener is unregistered along with the plugin, so the next access registers it again
+                chunkUnloadListenerRegistered = false;
+                chunkUnloads++;
+            }
+        }
     }
 
     @Override
     public IBlockData toNative(com.sk89q.worldedit.world.block.BlockState state) {
-        int stateId = BlockStateIdAccess.getBlockStateId(state);
-        return BlockStateIdAccess.isValidInternalId(stateId)
-            ? Block.getByCombinedId(stateId)
-            : ((CraftBlockData) BukkitAdapter.adapt(state)).getState();
+        return adapter.toNativeBlockState(state);
     }
 
     @Override
@@ -67,7 +168,110 @@ public IBlockData getBlockState(Chunk chunk, BlockPosition position) {
     @Nullable
     @Override
     public IBlockData setBlockState(Chunk chunk, BlockPosition position, IBlockData state) {
-        return chunk.setType(position, state, false, false);
+        return chunk.setType(retainablePosition(position, state), state, false, false);
+    }
+
+    /**
+     * Writes a whole 16x16x16 section of blocks straight into the chunk section,
+     * instead of going through {@link #setBlockState} for every block.
+     *
+     * <p>{@code combinedIds} holds one combined state id per block, indexed as
+     * {@code y << 8 | z << 4 | x}. Entries that are not a valid internal id leave
+     * the block untouched. The heightmaps of every column that changed are brought
+     * up to date once the section is written, and the changed blocks are marked for
+     * sending. No other side effects are applied.</p>
+     *
+     * <p>This is not part of {@link WorldNativeAccess}, so it is only reachable by
+     * code that holds this access directly.</p>
+     *
+     * @param chunkX the chunk X coordinate
+     * @param sectionY the section Y coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @param combinedIds the combined state ids
+     * @return the number of blocks that were changed
+     */
+    public int setBlocks(int chunkX, int sectionY, int chunkZ, int[] combinedIds) {
+        checkArgument(combinedIds.length == SECTION_VOLUME, "Expected %s combined ids, got %s", SECTION_VOLUME, combinedIds.length);
+        Chunk chunk = getChunk(chunkX, chunkZ);
+        ChunkSection[] sections = chunk.getSections();
+        int sectionIndex = sectionY;
+        checkArgument(sectionIndex >= 0 && sectionIndex < sections.length, "Section %s is outside of the world", sectionY);
+
+        int changed = 0;
+        boolean sectionWritten = false;
+        // One bit per column of the section, set when any block in it changed
+        long[] changedColumns = new long[SECTION_AREA / Long.SIZE];
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            int combinedId = combinedIds[i];
+            if (!BlockStateIdAccess.isValidInternalId(combinedId)) {
+                continue;
+            }
+            IBlockData state = Block.getByCombinedId(combinedId);
+            int x = i & 15;
+            int y = i >> 8;
+            int z = (i >> 4) & 15;
+            ChunkSection section = sections[sectionIndex];
+            if (section == null) {
+                // Let the chunk create the section, then write the rest of it directly
+                if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+                    continue;
+                }
+            } else {
+                IBlockData old = section.getType(x, y, z);
+                if (old == state) {
+                    continue;
+                }
+                if (old.getBlock() instanceof ITileEntity || state.getBlock() instanceof ITileEntity) {
+                    // Tile entities are created and removed by the chunk
+                    if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+                        continue;
+                    }
+                } else {
+                    section.setType(x, y, z, state);
+                    markBlockChanged(chunk, mutablePosition.c((chunkX << 4) + x, (sectionY << 4) + y, (chunkZ << 4) + z));
+                    sectionWritten = true;
+                }
+            }
+            int column = i & (SECTION_AREA - 1);
+            changedColumns[column >> 6] |= 1L << column;
+            changed++;
+        }
+        if (sectionWritten) {
+            chunk.markDirty();
+        }
+        if (changed > 0) {
+            updateHeightMaps(chunk, sections[sectionIndex], sectionY << 4, changedColumns);
+        }
+        return changed;
+    }
+
+    /**
+     * Brings the heightmaps of the given columns up to date with the blocks that were
+     * written straight into the section. Blocks below the top of a column cannot move
+     * it, so every column is only walked down from the top of the section to its top.
+     */
+    private static void updateHeightMaps(Chunk chunk, ChunkSection section, int baseY, long[] columns) {
+        for (int column = 0; column < SECTION_AREA; column++) {
+            if ((columns[column >> 6] & 1L << column) == 0) {
+                continue;
+            }
+            int x = column & 15;
+            int z = column >> 4;
+            for (HeightMap heightMap : chunk.heightMap.values()) {
+                for (int y = 15; y >= 0 && baseY + y >= heightMap.a(x, z) - 1; y--) {
+                    heightMap.a(x, baseY + y, z, section.getType(x, y, z));
+                }
+            }
+        }
+    }
+
+    private boolean setBlockInChunk(Chunk chunk, int chunkX, int sectionY, int chunkZ, int index, IBlockData state) {
+        BlockPosition position = mutablePosition.c((chunkX << 4) + (index & 15), (sectionY << 4) + (index >> 8), (chunkZ << 4) + ((index >> 4) & 15));
+        if (chunk.setType(retainablePosition(position, state), state, false, false) == null) {
+            return false;
+        }
+        markBlockChanged(chunk, position);
+        return true;
     }
 
     @Override
@@ -77,14 +281,117 @@ public IBlockData getValidBlockForPosition(IBlockData block, BlockPosition posit
 
     @Override
     public BlockPosition getPosition(int x, int y, int z) {
+        if (reusePositions) {
+            return mutablePosition.c(x, y, z);
+        }
         return new BlockPosition(x, y, z);
     }
 
+    /**
+     * Tile entities keep the position they are created at, so the reused mutable
+     * position must not be handed to the chunk when it creates one.
+     */
+    private BlockPosition retainablePosition(BlockPosition position, IBlockData state) {
+        if (position == mutablePosition && state.getBlock() instanceof ITileEntity) {
+            return new BlockPosition(position.getX(), position.getY(), position.getZ());
+        }
+        return position;
+    }
+
     @Override
     public void updateLightingForBlock(BlockPosition position) {
+        if (deferLighting) {
+            if (pendingLighting.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
+            return;
+        }
         getWorld().r(position);
     }
 
+    /**
+     * Sets whether lighting updates are collected during an edit instead of being
+     * queued as every block is set. Once this access is {@link #flush() flushed}, they
+     * are still handed to the light engine one block at a time, but only up to a
+     * number of blocks per tick, whole chunk sections at a time.
+     *
+     * @param deferLighting true to defer lighting updates
+     */
+    public void setDeferLighting(boolean deferLighting) {
+        if (!deferLighting) {
+            flush();
+        }
+        this.deferLighting = deferLighting;
+    }
+
+    /**
+     * Applies the work that was deferred during the current edit. This happens on
+     * the next server tick on its own, but may be called as soon as an edit is done.
+     * Deferred lighting is spread over as many further ticks as it needs.
+     */
+    public void flush() {
+        flushScheduled = false;
+        World world = this.world.get();
+        if (world == null) {
+            pendingLighting.clear();
+            pendingResend.clear();
+            pendingDirty.clear();
+            return;
+        }
+        if (!pendingLighting.isEmpty()) {
+            flushLightUpdates(world);
+        }
+        if (!pendingDirty.isEmpty()) {
+            flushDirty(world);
+        }
+        if (!pendingResend.isEmpty()) {
+            flushResend(world);
+        }
+    }
+
+    private void flushLightUpdates(World world) {
+        // Light is checked right away, one block at a time, and checking a whole edit in one tick
+        // stalls the server. This only rate-limits those checks: whole sections are checked up to
+        // a budget per tick and the rest waits for the next flush
+        BlockPosition.MutableBlockPosition position = new BlockPosition.MutableBlockPosition();
+        pendingLighting.drainSections(MAX_LIGHT_UPDATES_PER_TICK, (x, y, z) -> world.r(position.c(x, y, z)));
+        if (!pendingLighting.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void flushDirty(World world) {
+        PlayerChunkMap playerChunkMap = ((WorldServer) world).getPlayerChunkMap();
+        // Look each player chunk up once, it only keeps the chunk-relative positions
+        for (ChunkSectionBits_v1_13_R2_2.ChunkBits chunk : pendingDirty.getChunks()) {
+            PlayerChunk playerChunk = playerChunkMap.getChunk(chunk.getX(), chunk.getZ());
+            if (playerChunk != null) {
+                chunk.forEach((x, y, z) -> playerChunk.a(x & 15, y, z & 15));
+            }
+        }
+        pendingDirty.clear();
+    }
+
+    private void flushResend(World world) {
+        // Chunks with a section that went past the threshold skipped per-block notification
+        for (ChunkSectionBits_v1_13_R2_2.ChunkBits chunk : pendingResend.getChunks()) {
+            for (int sectionY : chunk.getSectionYs()) {
+                if (chunk.sectionSize(sectionY) > RESEND_THRESHOLD) {
+                    world.getWorld().refreshChunk(chunk.getX(), chunk.getZ());
+                    break;
+                }
+            }
+        }
+        pendingResend.clear();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(WorldEditPlugin.getInstance(), this::flush);
+        }
+    }
+
     @Override
     public boolean updateTileEntity(BlockPosition position, CompoundBinaryTag tag) {
         // We will assume that the tile entity was created for us,
@@ -101,10 +408,45 @@ public boolean updateTileEntity(BlockPosition position, CompoundBinaryTag tag) {
     @Override
     public void notifyBlockUpdate(Chunk chunk, BlockPosition position, IBlockData oldState, IBlockData newState) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            getWorld().notify(position, oldState, newState, UPDATE | NOTIFY);
+            if (pendingResend.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
+            // Past the threshold the whole chunk is resent on flush instead of each block,
+            // but paths that cross the block still have to be recomputed
+            if (pendingResend.sectionSize(position.getX(), position.getY(), position.getZ()) <= RESEND_THRESHOLD) {
+                getWorld().notify(position, oldState, newState, UPDATE | NOTIFY);
+            } else {
+                updateNavigation(position, oldState, newState);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the paths that cross a changed block, like notifying the world of the
+     * change does, without sending the block to players.
+     */
+    private void updateNavigation(BlockPosition position, IBlockData oldState, IBlockData newState) {
+        World world = getWorld();
+        try {
+            ((NavigationListener) NAVIGATION_LISTENER_FIELD.get(world)).a(world, position, oldState, newState, UPDATE | NOTIFY);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Couldn't read the world's navigation listener", e);
         }
     }
 
+    /**
+     * Finds a private field by its type, since its name differs between mappings.
+     */
+    private static Field findField(Class<?> owner, Class<?> type) {
+        for (Field field : owner.getDeclaredFields()) {
+            if (field.getType() == type) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        throw new ExceptionInInitializerError("No " + type.getName() + " in " + owner.getName());
+    }
+
     @Override
     public boolean isChunkTicking(Chunk chunk) {
         return true;
@@ -113,7 +455,9 @@ public boolean isChunkTicking(Chunk chunk) {
     @Override
     public void markBlockChanged(Chunk chunk, BlockPosition position) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            ((WorldServer) getWorld()).getPlayerChunkMap().flagDirty(position);
+            if (pendingDirty.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
         }
     }
 
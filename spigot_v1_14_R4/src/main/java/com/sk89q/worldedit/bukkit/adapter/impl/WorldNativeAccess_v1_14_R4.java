@@ -1,6 +1,6 @@
 package com.sk89q.worldedit.bukkit.adapter.impl;
 
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.wna.WorldNativeAccess;
 import com.sk89q.worldedit.util.SideEffect;
@@ -10,32 +10,83 @@
 import net.minecraft.server.v1_14_R1.Block;
 import net.minecraft.server.v1_14_R1.BlockPosition;
 import net.minecraft.server.v1_14_R1.Chunk;
+import net.minecraft.server.v1_14_R1.ChunkCoordIntPair;
 import net.minecraft.server.v1_14_R1.ChunkProviderServer;
+import net.minecraft.server.v1_14_R1.ChunkSection;
 import net.minecraft.server.v1_14_R1.EnumDirection;
+import net.minecraft.server.v1_14_R1.HeightMap;
 import net.minecraft.server.v1_14_R1.IBlockData;
+import net.minecraft.server.v1_14_R1.ITileEntity;
+import net.minecraft.server.v1_14_R1.LightEngine;
 import net.minecraft.server.v1_14_R1.NBTBase;
 import net.minecraft.server.v1_14_R1.NBTTagCompound;
+import net.minecraft.server.v1_14_R1.NavigationAbstract;
+import net.minecraft.server.v1_14_R1.OperatorBoolean;
 import net.minecraft.server.v1_14_R1.PlayerChunk;
+import net.minecraft.server.v1_14_R1.PlayerChunkMap;
 import net.minecraft.server.v1_14_R1.TileEntity;
+import net.minecraft.server.v1_14_R1.VoxelShapes;
 import net.minecraft.server.v1_14_R1.World;
+import net.minecraft.server.v1_14_R1.WorldServer;
+import org.bukkit.Bukkit;
 import org.bukkit.craftbukkit.v1_14_R1.CraftWorld;
 import org.bukkit.craftbukkit.v1_14_R1.block.data.CraftBlockData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Set;
 import javax.annotation.Nullable;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class WorldNativeAccess_v1_14_R4 implements WorldNativeAccess<Chunk, IBlockData, BlockPosition> {
     private static final int UPDATE = 1, NOTIFY = 2;
+    private static final int CHUNK_CACHE_SIZE = 4;
+    private static final int RESEND_THRESHOLD = Integer.getInteger("worldedit.adapter.resendThreshold", 64);
+    private static final boolean DEFER_LIGHTING = Boolean.getBoolean("worldedit.adapter.deferLighting");
+    private static final int MAX_LIGHT_UPDATES_PER_TICK = Integer.getInteger("worldedit.adapter.maxLightUpdatesPerTick", 16 * 16 * 16 * 2);
+    private static final int SECTION_AREA = 16 * 16;
+    private static final int SECTION_VOLUME = SECTION_AREA * 16;
+    // The world's path navigators, which still hear about every block once a section is resent whole
+    private static final Field NAVIGATORS_FIELD = findSetField(WorldServer.class, NavigationAbstract.class);
 
     private final Spigot_v1_14_R4 adapter;
     private final WeakReference<World> world;
     private SideEffectSet sideEffectSet;
+    private boolean reusePositions;
+    private final BlockPosition.MutableBlockPosition mutablePosition = new BlockPosition.MutableBlockPosition();
+
+    // A handful of recently used chunks, so that contiguous edits skip the chunk provider lookup
+    private final long[] cachedChunkKeys = new long[CHUNK_CACHE_SIZE];
+    @SuppressWarnings("unchecked")
+    private final WeakReference<Chunk>[] cachedChunks = new WeakReference[CHUNK_CACHE_SIZE];
+    private int nextCachedChunk;
+    private int cachedChunkUnloads;
+    // Chunk unloads on the whole server, so that cached chunks are dropped once any of them may be detached
+    private static int chunkUnloads;
+    private static boolean chunkUnloadListenerRegistered;
+
+    // Work that is deferred until the edit is flushed
+    private boolean deferLighting = DEFER_LIGHTING;
+    private final ChunkSectionBits_v1_14_R4 pendingLighting = new ChunkSectionBits_v1_14_R4();
+    private final ChunkSectionBits_v1_14_R4 pendingResend = new ChunkSectionBits_v1_14_R4();
+    private final ChunkSectionBits_v1_14_R4 pendingDirty = new ChunkSectionBits_v1_14_R4();
+    private boolean flushScheduled;
 
     public WorldNativeAccess_v1_14_R4(Spigot_v1_14_R4 adapter, WeakReference<World> world) {
         this.adapter = adapter;
         this.world = world;
+        registerChunkUnloadListener();
     }
 
     private World getWorld() {
@@ -44,20 +95,76 @@ private World getWorld() {
 
     @Override
     public void setCurrentSideEffectSet(SideEffectSet sideEffectSet) {
-        this.sideEffectSet = sideEffectSet;
+        if (this.sideEffectSet != sideEffectSet) {
+            this.sideEffectSet = sideEffectSet;
+            this.reusePositions = canReusePositions(sideEffectSet);
+        }
+    }
+
+    /**
+     * Without these side effects a position is only handed to code that reads it
+     * or copies it, so a single mutable position can be reused for every block.
+     */
+    private static boolean canReusePositions(SideEffectSet sideEffectSet) {
+        return !sideEffectSet.shouldApply(SideEffect.NEIGHBORS)
+            && !sideEffectSet.shouldApply(SideEffect.VALIDATION)
+            && !sideEffectSet.shouldApply(SideEffect.ENTITY_AI)
+            && !sideEffectSet.shouldApply(SideEffect.EVENTS)
+            && !sideEffectSet.shouldApply(SideEffect.UPDATE);
     }
 
     @Override
     public Chunk getChunk(int x, int z) {
-        return getWorld().getChunkAt(x, z);
+        // Any unload may have detached a cached chunk, including one a plugin asked for mid-tick
+        if (cachedChunkUnloads != chunkUnloads) {
+            Arrays.fill(cachedChunks, null);
+            cachedChunkUnloads = chunkUnloads;
+        }
+        long key = ChunkCoordIntPair.pair(x, z);
+        for (int i = 0; i < CHUNK_CACHE_SIZE; i++) {
+            if (cachedChunkKeys[i] == key && cachedChunks[i] != null) {
+                Chunk chunk = cachedChunks[i].get();
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+        }
+        Chunk chunk = getWorld().getChunkAt(x, z);
+        cachedChunkKeys[nextCachedChunk] = key;
+        cachedChunks[nextCachedChunk] = new WeakReference<>(chunk);
+        nextCachedChunk = (nextCachedChunk + 1) % CHUNK_CACHE_SIZE;
+        return chunk;
+    }
+
+    private static void registerChunkUnloadListener() {
+        if (!chunkUnloadListenerRegistered) {
+            chunkUnloadListenerRegistered = true;
+            Bukkit.getPluginManager().registerEvents(new ChunkUnloadListener(), WorldEditPlugin.getInstance());
+        }
+    }
+
+    /**
+     * Counts chunk unloads, which invalidates the chunks cached by every access.
+     */
+    private static final class ChunkUnloadListener implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChunkUnload(ChunkUnloadEvent event) {
+            chunkUnloads++;
+        }
+
+        @EventHandler
+        public void onPluginDisable(PluginDisableEvent event) {
+            if (event.getPlugin() == WorldEditPlugin.getInstance()) {
+                // The listener is unregistered along with the plugin, so the next access registers it again
+                chunkUnloadListenerRegistered = false;
+                chunkUnloads++;
+            }
+        }
     }
 
     @Override
     public IBlockData toNative(com.sk89q.worldedit.world.block.BlockState state) {
-        int stateId = BlockStateIdAccess.getBlockStateId(state);
-        return BlockStateIdAccess.isValidInternalId(stateId)
-            ? Block.getByCombinedId(stateId)
-            : ((CraftBlockData) BukkitAdapter.adapt(state)).getState();
+        return adapter.toNativeBlockState(state);
     }
 
     @Override
@@ -68,7 +175,110 @@ public IBlockData getBlockState(Chunk chunk, BlockPosition position) {
     @Nullable
     @Override
     public IBlockData setBlockState(Chunk chunk, BlockPosition position, IBlockData state) {
-        return chunk.setType(position, state, false, this.sideEffectSet.shouldApply(SideEffect.UPDATE));
+        return chunk.setType(retainablePosition(position, state), state, false, this.sideEffectSet.shouldApply(SideEffect.UPDATE));
+    }
+
+    /**
+     * Writes a whole 16x16x16 section of blocks straight into the chunk section,
+     * instead of going through {@link #setBlockState} for every block.
+     *
+     * <p>{@code combinedIds} holds one combined state id per block, indexed as
+     * {@code y << 8 | z << 4 | x}. Entries that are not a valid internal id leave
+     * the block untouched. The heightmaps of every column that changed are brought
+     * up to date once the section is written, and the changed blocks are marked for
+     * sending. No other side effects are applied.</p>
+     *
+     * <p>This is not part of {@link WorldNativeAccess}, so it is only reachable by
+     * code that holds this access directly.</p>
+     *
+     * @param chunkX the chunk X coordinate
+     * @param sectionY the section Y coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @param combinedIds the combined state ids
+     * @return the number of blocks that were changed
+     */
+    public int setBlocks(int chunkX, int sectionY, int chunkZ, int[] combinedIds) {
+        checkArgument(combinedIds.length == SECTION_VOLUME, "Expected %s combined ids, got %s", SECTION_VOLUME, combinedIds.length);
+        Chunk chunk = getChunk(chunkX, chunkZ);
+        ChunkSection[] sections = chunk.getSections();
+        int sectionIndex = sectionY;
+        checkArgument(sectionIndex >= 0 && sectionIndex < sections.length, "Section %s is outside of the world", sectionY);
+
+        int changed = 0;
+        boolean sectionWritten = false;
+        // One bit per column of the section, set when any block in it changed
+        long[] changedColumns = new long[SECTION_AREA / Long.SIZE];
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            int combinedId = combinedIds[i];
+            if (!BlockStateIdAccess.isValidInternalId(combinedId)) {
+                continue;
+            }
+            IBlockData state = Block.getByCombinedId(combinedId);
+            int x = i & 15;
+            int y = i >> 8;
+            int z = (i >> 4) & 15;
+            ChunkSection section = sections[sectionIndex];
+            if (section == null) {
+                // Let the chunk create the section, then write the rest of it directly
+                if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+                    continue;
+                }
+            } else {
+                IBlockData old = section.getType(x, y, z);
+                if (old == state) {
+                    continue;
+                }
+                if (old.getBlock() instanceof ITileEntity || state.getBlock() instanceof ITileEntity) {
+                    // Tile entities are created and removed by the chunk
+                    if (!setBlockInChunk(chunk, chunkX, sectionY, chunkZ, i, state)) {
+                        continue;
+                    }
+                } else {
+                    section.setType(x, y, z, state, false);
+                    markBlockChanged(chunk, mutablePosition.d((chunkX << 4) + x, (sectionY << 4) + y, (chunkZ << 4) + z));
+                    sectionWritten = true;
+                }
+            }
+            int column = i & (SECTION_AREA - 1);
+            changedColumns[column >> 6] |= 1L << column;
+            changed++;
+        }
+        if (sectionWritten) {
+            chunk.markDirty();
+        }
+        if (changed > 0) {
+            updateHeightMaps(chunk, sections[sectionIndex], sectionY << 4, changedColumns);
+        }
+        return changed;
+    }
+
+    /**
+     * Brings the heightmaps of the given columns up to date with the blocks that were
+     * written straight into the section. Blocks below the top of a column cannot move
+     * it, so every column is only walked down from the top of the section to its top.
+     */
+    private static void updateHeightMaps(Chunk chunk, ChunkSection section, int baseY, long[] columns) {
+        for (int column = 0; column < SECTION_AREA; column++) {
+            if ((columns[column >> 6] & 1L << column) == 0) {
+                continue;
+            }
+            int x = column & 15;
+            int z = column >> 4;
+            for (HeightMap heightMap : chunk.heightMap.values()) {
+                for (int y = 15; y >= 0 && baseY + y >= heightMap.a(x, z) - 1; y--) {
+                    heightMap.a(x, baseY + y, z, section.getType(x, y, z));
+                }
+            }
+        }
+    }
+
+    private boolean setBlockInChunk(Chunk chunk, int chunkX, int sectionY, int chunkZ, int index, IBlockData state) {
+        BlockPosition position = mutablePosition.d((chunkX << 4) + (index & 15), (sectionY << 4) + (index >> 8), (chunkZ << 4) + ((index >> 4) & 15));
+        if (chunk.setType(retainablePosition(position, state), state, false, false) == null) {
+            return false;
+        }
+        markBlockChanged(chunk, position);
+        return true;
     }
 
     @Override
@@ -78,14 +288,119 @@ public IBlockData getValidBlockForPosition(IBlockData block, BlockPosition posit
 
     @Override
     public BlockPosition getPosition(int x, int y, int z) {
+        if (reusePositions) {
+            return mutablePosition.d(x, y, z);
+        }
         return new BlockPosition(x, y, z);
     }
 
+    /**
+     * Tile entities keep the position they are created at, so the reused mutable
+     * position must not be handed to the chunk when it creates one.
+     */
+    private BlockPosition retainablePosition(BlockPosition position, IBlockData state) {
+        if (position == mutablePosition && state.getBlock() instanceof ITileEntity) {
+            return new BlockPosition(position.getX(), position.getY(), position.getZ());
+        }
+        return position;
+    }
+
     @Override
     public void updateLightingForBlock(BlockPosition position) {
+        if (deferLighting) {
+            if (pendingLighting.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
+            return;
+        }
         getWorld().getChunkProvider().getLightEngine().a(position);
     }
 
+    /**
+     * Sets whether lighting updates are collected during an edit instead of being
+     * queued as every block is set. Once this access is {@link #flush() flushed}, they
+     * are still handed to the light engine one block at a time, but only up to a
+     * number of blocks per tick, whole chunk sections at a time.
+     *
+     * @param deferLighting true to defer lighting updates
+     */
+    public void setDeferLighting(boolean deferLighting) {
+        if (!deferLighting) {
+            flush();
+        }
+        this.deferLighting = deferLighting;
+    }
+
+    /**
+     * Applies the work that was deferred during the current edit. This happens on
+     * the next server tick on its own, but may be called as soon as an edit is done.
+     * Deferred lighting is spread over as many further ticks as it needs.
+     */
+    public void flush() {
+        flushScheduled = false;
+        World world = this.world.get();
+        if (world == null) {
+            pendingLighting.clear();
+            pendingResend.clear();
+            pendingDirty.clear();
+            return;
+        }
+        if (!pendingLighting.isEmpty()) {
+            flushLightUpdates(world);
+        }
+        if (!pendingDirty.isEmpty()) {
+            flushDirty(world);
+        }
+        if (!pendingResend.isEmpty()) {
+            flushResend(world);
+        }
+    }
+
+    private void flushLightUpdates(World world) {
+        LightEngine lightEngine = world.getChunkProvider().getLightEngine();
+        // The light engine only takes single positions, copying each one as it's queued, and
+        // queueing a whole edit at once overflows its queue. This only rate-limits the per-block
+        // updates: whole sections are handed over up to a budget per tick and the rest waits
+        // for the next flush
+        BlockPosition.MutableBlockPosition position = new BlockPosition.MutableBlockPosition();
+        pendingLighting.drainSections(MAX_LIGHT_UPDATES_PER_TICK, (x, y, z) -> lightEngine.a(position.d(x, y, z)));
+        if (!pendingLighting.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void flushDirty(World world) {
+        PlayerChunkMap playerChunkMap = ((ChunkProviderServer) world.getChunkProvider()).playerChunkMap;
+        // Look each player chunk up once, it only keeps the chunk-relative positions
+        for (ChunkSectionBits_v1_14_R4.ChunkBits chunk : pendingDirty.getChunks()) {
+            PlayerChunk playerChunk = playerChunkMap.visibleChunks.get(ChunkCoordIntPair.pair(chunk.getX(), chunk.getZ()));
+            if (playerChunk != null) {
+                chunk.forEach((x, y, z) -> playerChunk.a(x & 15, y, z & 15));
+            }
+        }
+        pendingDirty.clear();
+    }
+
+    private void flushResend(World world) {
+        // Chunks with a section that went past the threshold skipped per-block notification
+        for (ChunkSectionBits_v1_14_R4.ChunkBits chunk : pendingResend.getChunks()) {
+            for (int sectionY : chunk.getSectionYs()) {
+                if (chunk.sectionSize(sectionY) > RESEND_THRESHOLD) {
+                    world.getWorld().refreshChunk(chunk.getX(), chunk.getZ());
+                    break;
+                }
+            }
+        }
+        pendingResend.clear();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(WorldEditPlugin.getInstance(), this::flush);
+        }
+    }
+
     @Override
     public boolean updateTileEntity(BlockPosition position, CompoundBinaryTag tag) {
         // We will assume that the tile entity was created for us,
@@ -102,10 +417,59 @@ public boolean updateTileEntity(BlockPosition position, CompoundBinaryTag tag) {
     @Override
     public void notifyBlockUpdate(Chunk chunk, BlockPosition position, IBlockData oldState, IBlockData newState) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            getWorld().notify(position, oldState, newState, UPDATE | NOTIFY);
+            if (pendingResend.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
+            // Past the threshold the whole chunk is resent on flush instead of each block,
+            // but paths that cross the block still have to be recomputed
+            if (pendingResend.sectionSize(position.getX(), position.getY(), position.getZ()) <= RESEND_THRESHOLD) {
+                getWorld().notify(position, oldState, newState, UPDATE | NOTIFY);
+            } else {
+                updateNavigation(position, oldState, newState);
+            }
         }
     }
 
+    /**
+     * Recomputes the paths that cross a changed block, like notifying the world of the
+     * change does, without sending the block to players.
+     */
+    private void updateNavigation(BlockPosition position, IBlockData oldState, IBlockData newState) {
+        World world = getWorld();
+        if (!VoxelShapes.c(oldState.getCollisionShape(world, position), newState.getCollisionShape(world, position), OperatorBoolean.NOT_SAME)) {
+            return;
+        }
+        for (NavigationAbstract navigation : getNavigators(world)) {
+            if (!navigation.i()) {
+                navigation.b(position);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<NavigationAbstract> getNavigators(World world) {
+        try {
+            return (Set<NavigationAbstract>) NAVIGATORS_FIELD.get(world);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Couldn't read the world's path navigators", e);
+        }
+    }
+
+    /**
+     * Finds a private set by its element type, since its name differs between mappings.
+     */
+    private static Field findSetField(Class<?> owner, Class<?> elementType) {
+        for (Field field : owner.getDeclaredFields()) {
+            Type type = field.getGenericType();
+            if (Set.class.isAssignableFrom(field.getType()) && type instanceof ParameterizedType
+                && ((ParameterizedType) type).getActualTypeArguments()[0] == elementType) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        throw new ExceptionInInitializerError("No set of " + elementType.getName() + " in " + owner.getName());
+    }
+
     @Override
     public boolean isChunkTicking(Chunk chunk) {
         return chunk.getState().isAtLeast(PlayerChunk.State.TICKING);
@@ -114,7 +478,9 @@ public boolean isChunkTicking(Chunk chunk) {
     @Override
     public void markBlockChanged(Chunk chunk, BlockPosition position) {
         if (chunk.getSections()[position.getY() >> ChunkStore.CHUNK_SHIFTS] != null) {
-            ((ChunkProviderServer) getWorld().getChunkProvider()).flagDirty(position);
+            if (pendingDirty.add(position.getX(), position.getY(), position.getZ())) {
+                scheduleFlush();
+            }
         }
     }
 
@@ -23,9 +23,10 @@
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseItem;
 import com.sk89q.worldedit.blocks.BaseItemStack;
@@ -52,7 +53,9 @@
 import com.sk89q.worldedit.util.concurrency.LazyReference;
 import com.sk89q.worldedit.util.formatting.text.Component;
 import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
+import com.sk89q.worldedit.util.io.file.SafeFiles;
 import com.sk89q.worldedit.util.nbt.BinaryTag;
+import com.sk89q.worldedit.util.nbt.BinaryTagIO;
 import com.sk89q.worldedit.util.nbt.ByteArrayBinaryTag;
 import com.sk89q.worldedit.util.nbt.ByteBinaryTag;
 import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
@@ -83,6 +86,7 @@
 import net.minecraft.server.v1_15_R1.Blocks;
 import net.minecraft.server.v1_15_R1.Chunk;
 import net.minecraft.server.v1_15_R1.ChunkCoordIntPair;
+import net.minecraft.server.v1_15_R1.ChunkSection;
 import net.minecraft.server.v1_15_R1.ChunkStatus;
 import net.minecraft.server.v1_15_R1.Clearable;
 import net.minecraft.server.v1_15_R1.DedicatedServer;
@@ -95,6 +99,7 @@
 import net.minecraft.server.v1_15_R1.IBlockState;
 import net.minecraft.server.v1_15_R1.INamable;
 import net.minecraft.server.v1_15_R1.IRegistry;
+import net.minecraft.server.v1_15_R1.ITileEntity;
 import net.minecraft.server.v1_15_R1.Item;
 import net.minecraft.server.v1_15_R1.ItemActionContext;
 import net.minecraft.server.v1_15_R1.ItemStack;
@@ -102,6 +107,7 @@
 import net.minecraft.server.v1_15_R1.MinecraftServer;
 import net.minecraft.server.v1_15_R1.MovingObjectPositionBlock;
 import net.minecraft.server.v1_15_R1.NBTBase;
+import net.minecraft.server.v1_15_R1.NBTCompressedStreamTools;
 import net.minecraft.server.v1_15_R1.NBTTagByte;
 import net.minecraft.server.v1_15_R1.NBTTagByteArray;
 import net.minecraft.server.v1_15_R1.NBTTagCompound;
@@ -142,15 +148,31 @@
 import org.spigotmc.SpigotConfig;
 import org.spigotmc.WatchdogThread;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
@@ -164,9 +186,13 @@ public final class Spigot_v1_15_R2 implements BukkitImplAdapter {
 
     private final Logger logger = Logger.getLogger(getClass().getCanonicalName());
 
-    private final Field nbtListTagListField;
     private final Field serverWorldsField;
     private final Watchdog watchdog;
+    private final IBlockData[] nativeBlockStates;
+    // Combined ids of every block type, filled the first time a state of the type is looked up
+    private final Map<BlockType, CombinedIdTable> combinedIdTables = new ConcurrentHashMap<>();
+    private final Map<BlockType, Map<String, Property<?>>> propertiesByType = new ConcurrentHashMap<>();
+    private final Map<BlockState, IBlockData> foreignBlockStates = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Code that may break between versions of Minecraft
@@ -179,13 +205,11 @@ public Spigot_v1_15_R2() throws NoSuchFieldException {
 
         if (CraftMagicNumbers.INSTANCE.getDataVersion() != 2230) throw new UnsupportedClassVersionError("Not 1.15.2!");
 
-        // The list of tags on an NBTTagList
-        nbtListTagListField = NBTTagList.class.getDeclaredField("list");
-        nbtListTagListField.setAccessible(true);
-
         serverWorldsField = CraftServer.class.getDeclaredField("worlds");
         serverWorldsField.setAccessible(true);
 
+        nativeBlockStates = createNativeBlockStateTable();
+
         new DataConverters_1_15_R2(CraftMagicNumbers.INSTANCE.getDataVersion(), this).build(ForkJoinPool.commonPool());
 
         Watchdog watchdog;
@@ -294,14 +318,96 @@ public OptionalInt getInternalBlockStateId(BlockData data) {
 
     @Override
     public OptionalInt getInternalBlockStateId(BlockState state) {
-        Block mcBlock = getBlockFromType(state.getBlockType());
-        IBlockData newState = mcBlock.getBlockData();
-        Map<Property<?>, Object> states = state.getStates();
-        newState = applyProperties(mcBlock.getStates(), newState, states);
-        final int combinedId = Block.getCombinedId(newState);
+        CombinedIdTable table = combinedIdTables.computeIfAbsent(state.getBlockType(), this::createCombinedIdTable);
+        int combinedId = table.combinedIds[table.valueIndex(state)];
         return combinedId == 0 && state.getBlockType() != BlockTypes.AIR ? OptionalInt.empty() : OptionalInt.of(combinedId);
     }
 
+    /**
+     * Builds the combined ids of every state of a block type in one pass. WorldEdit's
+     * properties list their values in the order of the native ones they're built from,
+     * so each value is looked up by its position rather than converted.
+     */
+    private CombinedIdTable createCombinedIdTable(BlockType type) {
+        List<? extends Property<?>> properties = type.getProperties();
+        Block mcBlock = getBlockFromType(type);
+        BlockStateList<Block, IBlockData> stateContainer = mcBlock.getStates();
+        IBlockState<?>[] nativeProperties = new IBlockState<?>[properties.size()];
+        List<?>[] nativeValues = new List<?>[properties.size()];
+        int size = 1;
+        for (int i = 0; i < properties.size(); i++) {
+            nativeProperties[i] = stateContainer.a(properties.get(i).getName());
+            nativeValues[i] = ImmutableList.copyOf(nativeProperties[i].getValues());
+            size *= nativeValues[i].size();
+        }
+        int[] combinedIds = new int[size];
+        for (int index = 0; index < size; index++) {
+            IBlockData newState = mcBlock.getBlockData();
+            // The last property varies fastest, as in CombinedIdTable.valueIndex
+            int rest = index;
+            for (int i = properties.size() - 1; i >= 0; i--) {
+                int count = nativeValues[i].size();
+                newState = newState.set((IBlockState) nativeProperties[i], (Comparable) nativeValues[i].get(rest % count));
+                rest /= count;
+            }
+            combinedIds[index] = Block.getCombinedId(newState);
+        }
+        return new CombinedIdTable(properties, combinedIds);
+    }
+
+    private static IBlockData[] createNativeBlockStateTable() {
+        int size = 0;
+        for (IBlockData state : Block.REGISTRY_ID) {
+            size = Math.max(size, Block.getCombinedId(state) + 1);
+        }
+        IBlockData[] table = new IBlockData[size];
+        for (IBlockData state : Block.REGISTRY_ID) {
+            table[Block.getCombinedId(state)] = state;
+        }
+        return table;
+    }
+
+    /**
+     * The combined ids of the states of one block type, laid out by the positions of
+     * each state's values in the type's properties.
+     */
+    private static final class CombinedIdTable {
+        // Cached, as BlockType.getProperties() copies its list on every call
+        private final List<? extends Property<?>> properties;
+        private final int[] combinedIds;
+
+        CombinedIdTable(List<? extends Property<?>> properties, int[] combinedIds) {
+            this.properties = properties;
+            this.combinedIds = combinedIds;
+        }
+
+        int valueIndex(BlockState state) {
+            int index = 0;
+            for (int i = 0; i < properties.size(); i++) {
+                Property<?> property = properties.get(i);
+                List<?> values = property.getValues();
+                index = index * values.size() + values.indexOf(state.getState(property));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Gets the native state for a block state. States with an internal id are read
+     * from a table of every state the server knows, built when the adapter loads.
+     *
+     * @param state the block state
+     * @return the native block state
+     */
+    IBlockData toNativeBlockState(BlockState state) {
+        int stateId = BlockStateIdAccess.getBlockStateId(state);
+        if (BlockStateIdAccess.isValidInternalId(stateId) && stateId < nativeBlockStates.length) {
+            return nativeBlockStates[stateId];
+        }
+        // Anything else goes through Bukkit's block data parsing, so only do that once per state
+        return foreignBlockStates.computeIfAbsent(state, s -> ((CraftBlockData) BukkitAdapter.adapt(s)).getState());
+    }
+
     @Override
     public BaseBlock getBlock(Location location) {
         checkNotNull(location);
@@ -327,7 +433,7 @@ public BaseBlock getBlock(Location location) {
         if (te != null) {
             NBTTagCompound tag = new NBTTagCompound();
             readTileEntityIntoTag(te, tag); // Load data
-            return state.toBaseBlock((CompoundBinaryTag) toNative(tag));
+            return state.toBaseBlock(LazyReference.from(() -> (CompoundBinaryTag) toNative(tag)));
         }
 
         return state.toBaseBlock();
@@ -435,9 +541,14 @@ public Component getRichItemName(BaseItemStack itemStack) {
         return TranslatableComponent.of(CraftItemStack.asNMSCopy(BukkitAdapter.adapt(itemStack)).j());
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+        // Built once per type, the same property instances are handed out every time
+        return propertiesByType.computeIfAbsent(blockType, this::createProperties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Property<?>> createProperties(BlockType blockType) {
         Map<String, Property<?>> properties = Maps.newTreeMap(String::compareTo);
         Block block = getBlockFromType(blockType);
         BlockStateList<Block, IBlockData> blockStateList = block.getStates();
@@ -459,7 +570,7 @@ public Component getRichItemName(BaseItemStack itemStack) {
 
             properties.put(property.getName(), property);
         }
-        return properties;
+        return Collections.unmodifiableMap(properties);
     }
 
     @Override
@@ -542,7 +653,12 @@ public boolean canPlaceAt(org.bukkit.World world, BlockVector3 position, BlockSt
     public boolean regenerate(org.bukkit.World bukkitWorld, Region region, Extent extent, RegenOptions options) {
         WorldServer originalWorld = ((CraftWorld) bukkitWorld).getHandle();
 
-        File saveFolder = Files.createTempDir();
+        File saveFolder;
+        try {
+            saveFolder = createRegenTempDir().toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         // register this just in case something goes wrong
         // normally it should be deleted at the end of this method
         saveFolder.deleteOnExit();
@@ -572,8 +688,8 @@ public boolean regenerate(org.bukkit.World bukkitWorld, Region region, Extent ex
 
                 CraftWorld craftWorld = freshWorld.getWorld();
                 BukkitWorld from = new BukkitWorld(craftWorld);
-                for (BlockVector3 vec : region) {
-                    extent.setBlock(vec, from.getFullBlock(vec));
+                for (BlockVector2 chunk : region.getChunks()) {
+                    copyRegenChunk(chunk, freshWorld.getChunkAt(chunk.getBlockX(), chunk.getBlockZ()), region, extent, freshWorld, from);
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -581,7 +697,7 @@ public boolean regenerate(org.bukkit.World bukkitWorld, Region region, Extent ex
         } catch (WorldEditException e) {
             throw new RuntimeException(e);
         } finally {
-            saveFolder.delete();
+            SafeFiles.tryHardToDeleteDir(saveFolder.toPath());
             try {
                 Map<String, org.bukkit.World> map = (Map<String, org.bukkit.World>) serverWorldsField.get(Bukkit.getServer());
                 map.remove("worldeditregentempworld");
@@ -591,6 +707,77 @@ public boolean regenerate(org.bukkit.World bukkitWorld, Region region, Extent ex
         return true;
     }
 
+    /**
+     * Creates the storage directory for a regen world, preferring a memory-backed location
+     * so that the session lock, level data and any region files never hit the disk.
+     */
+    private static Path createRegenTempDir() throws IOException {
+        String configured = System.getProperty("worldedit.adapter.regenWorldDir");
+        Path parent = Paths.get(configured != null ? configured : "/dev/shm");
+        if (Files.isDirectory(parent) && Files.isWritable(parent)) {
+            return Files.createTempDirectory(parent, "WorldEditWorldGen");
+        }
+        return Files.createTempDirectory("WorldEditWorldGen");
+    }
+
+    /**
+     * Copy the part of the region inside one regenerated chunk, a section at a time.
+     */
+    private void copyRegenChunk(BlockVector2 chunkPos, Chunk chunk, Region region, Extent extent,
+                                WorldServer freshWorld, BukkitWorld from) throws WorldEditException {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int minX = Math.max(min.getBlockX(), chunkPos.getBlockX() << 4);
+        int maxX = Math.min(max.getBlockX(), (chunkPos.getBlockX() << 4) + 15);
+        int minZ = Math.max(min.getBlockZ(), chunkPos.getBlockZ() << 4);
+        int maxZ = Math.min(max.getBlockZ(), (chunkPos.getBlockZ() << 4) + 15);
+        boolean cuboid = region instanceof CuboidRegion;
+        ChunkSection[] sections = chunk.getSections();
+        BlockPosition.MutableBlockPosition pos = new BlockPosition.MutableBlockPosition();
+
+        for (int sectionMinY = min.getBlockY() & ~15; sectionMinY <= max.getBlockY(); sectionMinY += 16) {
+            int sectionIndex = sectionMinY >> 4;
+            ChunkSection section = sectionIndex >= 0 && sectionIndex < sections.length ? sections[sectionIndex] : null;
+            int minY = Math.max(min.getBlockY(), sectionMinY);
+            int maxY = Math.min(max.getBlockY(), sectionMinY + 15);
+            // A missing section is all air, so it only needs to be read once
+            IBlockData emptyData = section == null ? chunk.getType(pos.d(minX, minY, minZ)) : null;
+            IBlockData lastData = null;
+            BlockState lastState = null;
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        BlockVector3 vec = BlockVector3.at(x, y, z);
+                        if (!cuboid && !region.contains(vec)) {
+                            continue;
+                        }
+                        IBlockData blockData = section == null ? emptyData : section.getType(x & 15, y & 15, z & 15);
+                        if (blockData != lastData) {
+                            lastData = blockData;
+                            lastState = BlockStateIdAccess.getBlockStateById(Block.getCombinedId(blockData));
+                        }
+                        if (lastState == null) {
+                            // Not known to WorldEdit by id, so let Bukkit work it out
+                            extent.setBlock(vec, from.getFullBlock(vec));
+                            continue;
+                        }
+                        // Only blocks that can hold a tile entity are worth looking one up for
+                        if (blockData.getBlock() instanceof ITileEntity) {
+                            TileEntity te = freshWorld.getTileEntity(pos.d(x, y, z));
+                            if (te != null) {
+                                NBTTagCompound tag = new NBTTagCompound();
+                                readTileEntityIntoTag(te, tag);
+                                extent.setBlock(vec, lastState.toBaseBlock(LazyReference.from(() -> (CompoundBinaryTag) toNative(tag))));
+                                continue;
+                            }
+                        }
+                        extent.setBlock(vec, lastState.toBaseBlock());
+                    }
+                }
+            }
+        }
+    }
+
     private static final Set<SideEffect> SUPPORTED_SIDE_EFFECTS = Sets.immutableEnumSet(
             SideEffect.NEIGHBORS,
             SideEffect.LIGHTING,
@@ -620,17 +807,37 @@ BinaryTag toNative(NBTBase foreign) {
         if (foreign == null) {
             return null;
         }
-        if (foreign instanceof NBTTagCompound) {
-            Map<String, BinaryTag> values = new HashMap<>();
-            Set<String> foreignKeys = ((NBTTagCompound) foreign).getKeys(); // map.keySet
-
-            for (String str : foreignKeys) {
-                NBTBase base = ((NBTTagCompound) foreign).get(str);
-                values.put(str, toNative(base));
+        if (BINARY_NBT && foreign instanceof NBTTagCompound) {
+            return toNativeBinary((NBTTagCompound) foreign);
+        }
+        if (!(foreign instanceof NBTTagCompound) && !(foreign instanceof NBTTagList)) {
+            return toNativeValue(foreign);
+        }
+        // Compounds and lists are walked with an explicit stack, so deeply nested NBT can't overflow
+        NbtBuilderPool pool = NBT_BUILDER_POOLS.get();
+        Deque<ToNativeFrame> stack = new ArrayDeque<>();
+        stack.push(new ToNativeFrame(foreign, pool));
+        while (true) {
+            ToNativeFrame frame = stack.peek();
+            NBTBase child = frame.next();
+            if (child == null) {
+                BinaryTag converted = frame.build(pool);
+                stack.pop();
+                if (stack.isEmpty()) {
+                    return converted;
+                }
+                stack.peek().add(converted);
+            } else if (child instanceof NBTTagCompound || child instanceof NBTTagList) {
+                stack.push(new ToNativeFrame(child, pool));
+            } else {
+                frame.add(toNativeValue(child));
             }
-            return CompoundBinaryTag.from(values);
-        } else if (foreign instanceof NBTTagByte) {
-            return ByteBinaryTag.of(((NBTTagByte) foreign).asByte());
+        }
+    }
+
+    private BinaryTag toNativeValue(NBTBase foreign) {
+        if (foreign instanceof NBTTagByte) {
+            return byteTag(((NBTTagByte) foreign).asByte());
         } else if (foreign instanceof NBTTagByteArray) {
             return ByteArrayBinaryTag.of(((NBTTagByteArray) foreign).getBytes());
         } else if (foreign instanceof NBTTagDouble) {
@@ -638,24 +845,17 @@ BinaryTag toNative(NBTBase foreign) {
         } else if (foreign instanceof NBTTagFloat) {
             return FloatBinaryTag.of(((NBTTagFloat) foreign).asFloat());
         } else if (foreign instanceof NBTTagInt) {
-            return IntBinaryTag.of(((NBTTagInt) foreign).asInt());
+            return intTag(((NBTTagInt) foreign).asInt());
         } else if (foreign instanceof NBTTagIntArray) {
             return IntArrayBinaryTag.of(((NBTTagIntArray) foreign).getInts());
         } else if (foreign instanceof NBTTagLongArray) {
             return LongArrayBinaryTag.of(((NBTTagLongArray) foreign).getLongs());
-        } else if (foreign instanceof NBTTagList) {
-            try {
-                return toNativeList((NBTTagList) foreign);
-            } catch (Throwable e) {
-                logger.log(Level.WARNING, "Failed to convert NBTTagList", e);
-                return ListBinaryTag.empty();
-            }
         } else if (foreign instanceof NBTTagLong) {
             return LongBinaryTag.of(((NBTTagLong) foreign).asLong());
         } else if (foreign instanceof NBTTagShort) {
-            return ShortBinaryTag.of(((NBTTagShort) foreign).asShort());
+            return shortTag(((NBTTagShort) foreign).asShort());
         } else if (foreign instanceof NBTTagString) {
-            return StringBinaryTag.of(foreign.asString());
+            return stringTag(foreign.asString());
         } else if (foreign instanceof NBTTagEnd) {
             return EndBinaryTag.get();
         } else {
@@ -663,27 +863,63 @@ BinaryTag toNative(NBTBase foreign) {
         }
     }
 
+    // Converts whole compounds through NBT's binary format instead of copying them tag by tag
+    private static final boolean BINARY_NBT = Boolean.getBoolean("worldedit.adapter.binaryNbt");
+    private static final int MAX_RETAINED_NBT_BUFFER = 1024 * 1024;
+    private static final ThreadLocal<NbtBuffer> NBT_BUFFERS = ThreadLocal.withInitial(NbtBuffer::new);
+
+    /**
+     * Converts a NMS compound into a WorldEdit one by writing it into a reused
+     * buffer in NBT's binary format and reading it back with WorldEdit's reader.
+     *
+     * @param foreign the NMS compound
+     * @return the WorldEdit compound
+     */
+    CompoundBinaryTag toNativeBinary(NBTTagCompound foreign) {
+        NbtBuffer buffer = NBT_BUFFERS.get();
+        try {
+            NBTCompressedStreamTools.a(foreign, (DataOutput) buffer.output);
+            return BinaryTagIO.reader().read((DataInput) buffer.input());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.release();
+        }
+    }
+
     /**
-     * Convert a foreign NBT list tag into a native WorldEdit one.
+     * Converts a WorldEdit compound into a NMS one by writing it into a reused
+     * buffer in NBT's binary format and reading it back with the server's reader.
      *
-     * @param foreign the foreign tag
-     * @return the converted tag
-     * @throws NoSuchFieldException on error
-     * @throws SecurityException on error
-     * @throws IllegalArgumentException on error
-     * @throws IllegalAccessException on error
+     * @param foreign the WorldEdit compound
+     * @return the NMS compound
      */
-    private ListBinaryTag toNativeList(NBTTagList foreign) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
-        ListBinaryTag.Builder values = ListBinaryTag.builder();
+    NBTTagCompound fromNativeBinary(CompoundBinaryTag foreign) {
+        NbtBuffer buffer = NBT_BUFFERS.get();
+        try {
+            BinaryTagIO.writer().write(foreign, (DataOutput) buffer.output);
+            return NBTCompressedStreamTools.a(buffer.input());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.release();
+        }
+    }
 
-        List foreignList;
-        foreignList = (List) nbtListTagListField.get(foreign);
-        for (int i = 0; i < foreign.size(); i++) {
-            NBTBase element = (NBTBase) foreignList.get(i);
-            values.add(toNative(element)); // List elements shouldn't have names
+    private static final class NbtBuffer extends ByteArrayOutputStream {
+        private final DataOutputStream output = new DataOutputStream(this);
+
+        DataInputStream input() {
+            return new DataInputStream(new ByteArrayInputStream(buf, 0, count));
         }
 
-        return values.build();
+        void release() {
+            reset();
+            if (buf.length > MAX_RETAINED_NBT_BUFFER) {
+                // Don't keep an exceptionally large tag's buffer around for the thread's lifetime
+                NBT_BUFFERS.remove();
+            }
+        }
     }
 
     /**
@@ -696,13 +932,33 @@ NBTBase fromNative(BinaryTag foreign) {
         if (foreign == null) {
             return null;
         }
-        if (foreign instanceof CompoundBinaryTag) {
-            NBTTagCompound tag = new NBTTagCompound();
-            for (String key : ((CompoundBinaryTag) foreign).keySet()) {
-                tag.set(key, fromNative(((CompoundBinaryTag) foreign).get(key)));
+        if (BINARY_NBT && foreign instanceof CompoundBinaryTag) {
+            return fromNativeBinary((CompoundBinaryTag) foreign);
+        }
+        if (!(foreign instanceof CompoundBinaryTag) && !(foreign instanceof ListBinaryTag)) {
+            return fromNativeValue(foreign);
+        }
+        Deque<FromNativeFrame> stack = new ArrayDeque<>();
+        stack.push(new FromNativeFrame(foreign));
+        while (true) {
+            FromNativeFrame frame = stack.peek();
+            BinaryTag child = frame.next();
+            if (child == null) {
+                stack.pop();
+                if (stack.isEmpty()) {
+                    return frame.tag;
+                }
+                stack.peek().add(frame.tag);
+            } else if (child instanceof CompoundBinaryTag || child instanceof ListBinaryTag) {
+                stack.push(new FromNativeFrame(child));
+            } else {
+                frame.add(fromNativeValue(child));
             }
-            return tag;
-        } else if (foreign instanceof ByteBinaryTag) {
+        }
+    }
+
+    private NBTBase fromNativeValue(BinaryTag foreign) {
+        if (foreign instanceof ByteBinaryTag) {
             return NBTTagByte.a(((ByteBinaryTag) foreign).value());
         } else if (foreign instanceof ByteArrayBinaryTag) {
             return new NBTTagByteArray(((ByteArrayBinaryTag) foreign).value());
@@ -716,13 +972,6 @@ NBTBase fromNative(BinaryTag foreign) {
             return new NBTTagIntArray(((IntArrayBinaryTag) foreign).value());
         } else if (foreign instanceof LongArrayBinaryTag) {
             return new NBTTagLongArray(((LongArrayBinaryTag) foreign).value());
-        } else if (foreign instanceof ListBinaryTag) {
-            NBTTagList tag = new NBTTagList();
-            ListBinaryTag foreignList = (ListBinaryTag) foreign;
-            for (BinaryTag t : foreignList) {
-                tag.add(fromNative(t));
-            }
-            return tag;
         } else if (foreign instanceof LongBinaryTag) {
             return NBTTagLong.a(((LongBinaryTag) foreign).value());
         } else if (foreign instanceof ShortBinaryTag) {
@@ -736,6 +985,189 @@ NBTBase fromNative(BinaryTag foreign) {
         }
     }
 
+    private static final ThreadLocal<NbtBuilderPool> NBT_BUILDER_POOLS = ThreadLocal.withInitial(NbtBuilderPool::new);
+
+    // Keys, short strings and small numbers repeat across every container and entity in a clipboard
+    private static final Interner<String> NBT_KEYS = Interners.newWeakInterner();
+    private static final Interner<StringBinaryTag> NBT_STRINGS = Interners.newWeakInterner();
+    private static final int MAX_SHARED_STRING_LENGTH = 64;
+    private static final int MIN_SHARED_NUMBER = -128;
+    private static final int MAX_SHARED_NUMBER = 1024;
+    private static final ByteBinaryTag[] BYTE_TAGS = new ByteBinaryTag[256];
+    private static final ShortBinaryTag[] SHORT_TAGS = new ShortBinaryTag[MAX_SHARED_NUMBER - MIN_SHARED_NUMBER];
+    private static final IntBinaryTag[] INT_TAGS = new IntBinaryTag[MAX_SHARED_NUMBER - MIN_SHARED_NUMBER];
+
+    static {
+        for (int i = 0; i < BYTE_TAGS.length; i++) {
+            BYTE_TAGS[i] = ByteBinaryTag.of((byte) i);
+        }
+        for (int i = 0; i < SHORT_TAGS.length; i++) {
+            SHORT_TAGS[i] = ShortBinaryTag.of((short) (i + MIN_SHARED_NUMBER));
+            INT_TAGS[i] = IntBinaryTag.of(i + MIN_SHARED_NUMBER);
+        }
+    }
+
+    private static ByteBinaryTag byteTag(byte value) {
+        return BYTE_TAGS[value & 0xFF];
+    }
+
+    private static ShortBinaryTag shortTag(short value) {
+        return value >= MIN_SHARED_NUMBER && value < MAX_SHARED_NUMBER
+            ? SHORT_TAGS[value - MIN_SHARED_NUMBER] : ShortBinaryTag.of(value);
+    }
+
+    private static IntBinaryTag intTag(int value) {
+        return value >= MIN_SHARED_NUMBER && value < MAX_SHARED_NUMBER
+            ? INT_TAGS[value - MIN_SHARED_NUMBER] : IntBinaryTag.of(value);
+    }
+
+    private static StringBinaryTag stringTag(String value) {
+        StringBinaryTag tag = StringBinaryTag.of(value);
+        // Long strings such as book pages are rarely repeated, so don't hold on to them
+        return value.length() <= MAX_SHARED_STRING_LENGTH ? NBT_STRINGS.intern(tag) : tag;
+    }
+
+    /**
+     * A compound or list that is being converted to WorldEdit NBT.
+     */
+    private final class ToNativeFrame {
+        private final NBTTagCompound compound;
+        private final Iterator<String> keys;
+        private final List<?> elements;
+        private final Map<String, BinaryTag> values;
+        private final List<BinaryTag> listValues;
+        private String key;
+        private int index;
+
+        ToNativeFrame(NBTBase foreign, NbtBuilderPool pool) {
+            if (foreign instanceof NBTTagCompound) {
+                compound = (NBTTagCompound) foreign;
+                keys = compound.getKeys().iterator();
+                elements = null;
+                values = pool.takeMap();
+                listValues = null;
+            } else {
+                compound = null;
+                keys = null;
+                elements = (List<?>) foreign;
+                values = null;
+                listValues = pool.takeList();
+            }
+        }
+
+        @Nullable
+        NBTBase next() {
+            if (compound != null) {
+                if (!keys.hasNext()) {
+                    return null;
+                }
+                key = keys.next();
+                return compound.get(key);
+            }
+            return index < elements.size() ? (NBTBase) elements.get(index++) : null;
+        }
+
+        void add(BinaryTag value) {
+            if (compound != null) {
+                values.put(NBT_KEYS.intern(key), value);
+            } else {
+                listValues.add(value); // List elements shouldn't have names
+            }
+        }
+
+        BinaryTag build(NbtBuilderPool pool) {
+            // Both copy what they are given, so the builders can go straight back to the pool
+            if (compound != null) {
+                CompoundBinaryTag tag = CompoundBinaryTag.from(values);
+                pool.release(values);
+                return tag;
+            }
+            ListBinaryTag tag = ListBinaryTag.from(listValues);
+            pool.release(listValues);
+            return tag;
+        }
+    }
+
+    /**
+     * A compound or list that is being converted to NMS NBT.
+     */
+    private static final class FromNativeFrame {
+        private final NBTBase tag;
+        private final CompoundBinaryTag compound;
+        private final Iterator<String> keys;
+        private final Iterator<BinaryTag> elements;
+        private String key;
+
+        FromNativeFrame(BinaryTag foreign) {
+            if (foreign instanceof CompoundBinaryTag) {
+                compound = (CompoundBinaryTag) foreign;
+                keys = compound.keySet().iterator();
+                elements = null;
+                tag = new NBTTagCompound();
+            } else {
+                compound = null;
+                keys = null;
+                elements = ((ListBinaryTag) foreign).iterator();
+                tag = new NBTTagList();
+            }
+        }
+
+        @Nullable
+        BinaryTag next() {
+            if (compound != null) {
+                if (!keys.hasNext()) {
+                    return null;
+                }
+                key = keys.next();
+                return compound.get(key);
+            }
+            return elements.hasNext() ? elements.next() : null;
+        }
+
+        void add(NBTBase value) {
+            if (compound != null) {
+                ((NBTTagCompound) tag).set(key, value);
+            } else {
+                ((NBTTagList) tag).add(value);
+            }
+        }
+    }
+
+    /**
+     * Per-thread maps and lists that are reused to collect the children of
+     * compounds and lists while converting to WorldEdit NBT.
+     */
+    private static final class NbtBuilderPool {
+        private static final int MAX_POOLED = 64;
+
+        private final Deque<Map<String, BinaryTag>> maps = new ArrayDeque<>();
+        private final Deque<List<BinaryTag>> lists = new ArrayDeque<>();
+
+        Map<String, BinaryTag> takeMap() {
+            Map<String, BinaryTag> map = maps.poll();
+            return map != null ? map : new HashMap<>();
+        }
+
+        List<BinaryTag> takeList() {
+            List<BinaryTag> list = lists.poll();
+            return list != null ? list : new ArrayList<>();
+        }
+
+        void release(Map<String, BinaryTag> map) {
+            map.clear();
+            if (maps.size() < MAX_POOLED) {
+                maps.push(map);
+            }
+        }
+
+        void release(List<BinaryTag> list) {
+            list.clear();
+            if (lists.size() < MAX_POOLED) {
+                lists.push(list);
+            }
+        }
+    }
+
     @Override
     public boolean supportsWatchdog() {
         return watchdog != null;